@@ -1,5 +1,10 @@
 package tablut;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 
 import static tablut.Piece.*;
 
@@ -25,14 +30,40 @@ class AI extends Player {
         this(null, null);
     }
 
+    /** A new AI with no piece or controller that searches DEPTH levels
+     *  (intended to produce a template). */
+    AI(int depth) {
+        this(null, null, depth);
+    }
+
     /** A new AI playing PIECE under control of CONTROLLER. */
     AI(Piece piece, Controller controller) {
+        this(piece, controller, DEFAULT_DEPTH);
+    }
+
+    /** A new AI playing PIECE under control of CONTROLLER that searches
+     *  DEPTH levels. */
+    AI(Piece piece, Controller controller, int depth) {
         super(piece, controller);
+        _depth = depth;
     }
 
     @Override
     Player create(Piece piece, Controller controller) {
-        return new AI(piece, controller);
+        AI result = new AI(piece, controller, _depth);
+        result._network = _network;
+        return result;
+    }
+
+    /** Evaluate positions with NETWORK rather than by hand, if NETWORK is
+     *  not null. */
+    void setNetwork(Network network) {
+        _network = network;
+    }
+
+    /** Return the number of levels I search. */
+    int depth() {
+        return _depth;
     }
 
     @Override
@@ -41,6 +72,19 @@ class AI extends Player {
 
     }
 
+    @Override
+    Action myAction() {
+        Clock clock = _controller.clock();
+        if (clock == null) {
+            return Action.move(findMove());
+        }
+        return Action.move(
+            findMove(board(),
+                     new TimeManager(clock.remaining(myPiece()),
+                                     clock.increment(),
+                                     board().moveCount())));
+    }
+
     @Override
     boolean isManual() {
         return false;
@@ -49,8 +93,53 @@ class AI extends Player {
     /** Return a move for me from the current position, assuming there
      *  is a move. */
     private Move findMove() {
-        Board b = new Board(board());
+        return findMove(board());
+    }
+
+    /** Return a move for the side to move in POSITION, assuming there is
+     *  a move.  POSITION itself is not modified. */
+    Move findMove(Board position) {
+        return findMove(position, NO_DEADLINE);
+    }
+
+    /** Return a move for the side to move in POSITION, assuming there is
+     *  a move, searching no later than DEADLINE (a value of
+     *  System.nanoTime(), or NO_DEADLINE).  If the search is stopped (see
+     *  stopped) before it finishes, returns the best of the moves searched
+     *  fully so far, or, if there are none, the first legal move.
+     *  POSITION itself is not modified. */
+    Move findMove(Board position, long deadline) {
+        return findMove(position, deadline, null);
+    }
+
+    /** Return a move for the side to move in POSITION, assuming there is
+     *  a move, taking the time allowed by TIME.  Searches to each depth
+     *  in turn (as for depth()), from 0 up to MAX_TIMED_DEPTH, for as
+     *  long as TIME allows, and returns the best move of the deepest
+     *  search completed.  POSITION itself is not modified. */
+    Move findMove(Board position, TimeManager time) {
+        return findMove(position, NO_DEADLINE, time);
+    }
+
+    /** Return a move for the side to move in POSITION, assuming there is
+     *  a move, searching no later than DEADLINE (or NO_DEADLINE): to my
+     *  depth if TIME is null, and otherwise deepening as TIME allows and
+     *  stopping at its maximum, if that comes before DEADLINE.  POSITION
+     *  itself is not modified. */
+    Move findMove(Board position, long deadline, TimeManager time) {
+        if (time != null) {
+            long limit = System.nanoTime() + time.maximum();
+            if (deadline == NO_DEADLINE || limit - deadline < 0) {
+                deadline = limit;
+            }
+        }
+        Events.Search event = new Events.Search();
+        event.begin();
+        long start = System.nanoTime();
+        Board b = searchBoard(position);
         foundMove = null;
+        _nodes = 0;
+        startSearch(deadline);
         int sense = 0;
 
         int alpha = Integer.MIN_VALUE;
@@ -58,22 +147,251 @@ class AI extends Player {
 
         Boolean saveMove = true;
 
-        if (board().turn() == WHITE || board().turn() == KING) {
+        if (position.turn() == WHITE || position.turn() == KING) {
             sense = -1;
 
         } else {
             sense = 1;
         }
 
-        findMove(b, 0, saveMove, sense, alpha, beta);
+        Move best = null;
+        int bestScore = 0;
+        try {
+            checkStop();
+            if (time == null) {
+                _searchDepth = _depth;
+                _score = findMove(b, 0, saveMove, sense, alpha, beta);
+            } else {
+                for (_searchDepth = 0; ; _searchDepth += 1) {
+                    Events.Iteration iteration = new Events.Iteration();
+                    iteration.begin();
+                    foundMove = null;
+                    int score = findMove(b, 0, saveMove, sense, alpha, beta);
+                    iteration.end();
+                    commit(iteration, 1, score);
+                    boolean unstable = best != null && foundMove != best;
+                    best = foundMove;
+                    bestScore = score;
+                    if (_searchDepth == MAX_TIMED_DEPTH
+                        || !time.another(System.nanoTime() - start,
+                                         unstable)) {
+                        break;
+                    }
+                }
+            }
+        } catch (SearchStopped excp) {
+            if (foundMove == null && best == null) {
+                foundMove = position.legalMoves(position.turn()).get(0);
+                _score = staticScore(position, position.turn());
+            }
+        }
+        if (best != null) {
+            foundMove = best;
+            _score = bestScore;
+        }
 
+        Metrics.NODES.add(_nodes);
+        Metrics.THINK_TIME.observe((System.nanoTime() - start) * 1e-9);
+        event.end();
+        if (event.shouldCommit()) {
+            event.depth = _searchDepth;
+            event.lines = 1;
+            event.nodes = _nodes;
+            event.score = _score;
+            event.move = foundMove == null ? null : foundMove.toString();
+            event.commit();
+        }
         return foundMove;
 
     }
 
     /** The move found by the last call to one of the ...FindMove methods
      *  below. */
-    private static Move foundMove;
+    private Move foundMove;
+
+    /** Ask the search in progress to stop as soon as it can, and return
+     *  the best move it has found, or, if no search is in progress, the
+     *  next search to stop as soon as it starts.  The request lasts until
+     *  a search stops for it, or until clearStop(), so that a stop made
+     *  just before a search that is handed to another thread starts is not
+     *  lost.  May be called from any thread. */
+    @Override
+    void stop() {
+        _stop = true;
+    }
+
+    /** Withdraw a request made by stop() that has not yet stopped a
+     *  search.  Called before requesting a search, so that a request meant
+     *  for an earlier search does not cut it short. */
+    @Override
+    void clearStop() {
+        _stop = false;
+    }
+
+    /** Return true iff the last search was stopped before it finished, by
+     *  stop(), its deadline, or an interrupt of its thread. */
+    boolean stopped() {
+        return _stopped;
+    }
+
+    /** Prepare to start a search that ends no later than DEADLINE.  Does
+     *  not withdraw a request to stop (see stop). */
+    private void startSearch(long deadline) {
+        _stopped = false;
+        _deadline = deadline;
+        _searchStart = System.nanoTime();
+        _nextProgress = _searchStart + PROGRESS_INTERVAL;
+    }
+
+    /** Throw SearchStopped if the search in progress should stop, and
+     *  report its progress to my controller, if any, when it is due.
+     *  Called as a search starts and then every CHECK_INTERVAL nodes, so
+     *  that the cost of reading the clock and the shared flag is spread
+     *  over many positions. */
+    private void checkStop() {
+        if (_stop || Thread.currentThread().isInterrupted()) {
+            _stop = false;
+            _stopped = true;
+            throw STOPPED;
+        }
+        if (_deadline != NO_DEADLINE || _controller != null) {
+            long now = System.nanoTime();
+            if (_deadline != NO_DEADLINE && now - _deadline >= 0) {
+                _stopped = true;
+                throw STOPPED;
+            }
+            if (_controller != null && now - _nextProgress >= 0) {
+                _nextProgress = now + PROGRESS_INTERVAL;
+                _controller.reportProgress(
+                    new Progress(_searchDepth, _nodes, foundMove, _score,
+                                 now - _searchStart));
+            }
+        }
+    }
+
+    /** Least time between reports of a search's progress, in
+     *  nanoseconds. */
+    private static final long PROGRESS_INTERVAL = 200_000_000L;
+
+    /** Time (as for System.nanoTime()) at which the current search
+     *  started. */
+    private long _searchStart;
+    /** Time at which the current search's progress is next due to be
+     *  reported. */
+    private long _nextProgress;
+
+    /** Value of a deadline meaning that there is none. */
+    static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    /** Number of positions searched between checks for stopping (a power
+     *  of 2).  Positions counted are those whose moves are searched, each
+     *  of which costs a static evaluation of every move, so a check is
+     *  cheap in comparison even this often. */
+    private static final int CHECK_INTERVAL = 16;
+
+    /** Set by stop() to ask the search in progress, or the next one, to
+     *  stop, and cleared when a search stops for it. */
+    private volatile boolean _stop;
+    /** True iff the last search was stopped. */
+    private boolean _stopped;
+    /** Time (as for System.nanoTime()) at which the current search must
+     *  stop, or NO_DEADLINE. */
+    private long _deadline = NO_DEADLINE;
+
+    /** Thrown to unwind a search that has been stopped.  It has no stack
+     *  trace, so one instance serves for all. */
+    private static final class SearchStopped extends RuntimeException {
+        /** The exception. */
+        SearchStopped() {
+            super("search stopped", null, false, false);
+        }
+
+        /** Version of the serialized form. */
+        private static final long serialVersionUID = 1L;
+    }
+
+    /** The exception thrown by checkStop. */
+    private static final SearchStopped STOPPED = new SearchStopped();
+
+    /** A snapshot of the progress of a search, as reported to a
+     *  Controller while it runs. */
+    static final class Progress {
+        /** The progress of a search to depth DEPTH (as for depth()) that
+         *  has searched NODES positions in ELAPSED nanoseconds, whose best
+         *  move so far, if any, is MOVE, with value SCORE. */
+        Progress(int depth, long nodes, Move move, int score,
+                 long elapsed) {
+            _depth = depth;
+            _nodes = nodes;
+            _move = move;
+            _score = score;
+            _elapsed = elapsed;
+        }
+
+        /** Return the depth being searched. */
+        int depth() {
+            return _depth;
+        }
+
+        /** Return the number of positions searched so far. */
+        long nodes() {
+            return _nodes;
+        }
+
+        /** Return the best move so far, or null if there is none yet. */
+        Move move() {
+            return _move;
+        }
+
+        /** Return the score of move() (favoring white, as for
+         *  staticScore). */
+        int score() {
+            return _score;
+        }
+
+        /** Return the time taken so far, in nanoseconds. */
+        long elapsed() {
+            return _elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Depth %d: %s, %d positions in %.1f s",
+                                 _depth,
+                                 _move == null ? "no move yet"
+                                 : String.format("%s (%d)", _move, _score),
+                                 _nodes, _elapsed * 1e-9);
+        }
+
+        /** Depth being searched. */
+        private final int _depth;
+        /** Positions searched. */
+        private final long _nodes;
+        /** Best move so far, or null. */
+        private final Move _move;
+        /** Score of _move. */
+        private final int _score;
+        /** Time taken. */
+        private final long _elapsed;
+    }
+
+    /** Return the score (favoring white, as for staticScore) of the move
+     *  returned by the last call to findMove. */
+    int score() {
+        return _score;
+    }
+
+    /** Score of the last move found. */
+    private int _score;
+
+    /** Return the number of positions searched by the last call to
+     *  findMove or analyze. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Number of positions searched so far by the current search. */
+    private long _nodes;
 
     /** Evaluate the maximizer function in the mimimax tree.
      * @param board  board
@@ -84,20 +402,37 @@ class AI extends Player {
      * @return final score*/
     private int findMax(Board board, int depth, boolean saveMove,
                         int alpha, int beta) {
-
+        _nodes += 1;
+        if ((_nodes & (CHECK_INTERVAL - 1)) == 0) {
+            checkStop();
+        }
         if (board.winner() != null) {
             return staticScore(board, board.turn());
         }
+        Long key = null;
+        if (_table != null && !saveMove) {
+            key = board.canonicalKey();
+            Entry entry = probe(key, depth, alpha, beta);
+            if (entry != null) {
+                return entry.score;
+            }
+        }
+        int alpha0 = alpha, beta0 = beta;
         Move amove = null;
 
         int tempVal = -WINNING_VALUE;
         for (Move m : board.legalMoves(WHITE)) {
+            if (saveMove && _excluded.contains(m)) {
+                continue;
+            }
 
             Board mvboard = new Board(board);
             mvboard.makeMove(m);
 
             int response;
-            if (depth == maxDepth(mvboard)) {
+            if (mvboard.repeatedPosition()) {
+                response = -WINNING_VALUE;
+            } else if (depth == maxDepth()) {
                 response = staticScore(mvboard, mvboard.turn());
             } else {
                 response = findMin(mvboard, depth + 1, false, alpha, beta);
@@ -112,6 +447,10 @@ class AI extends Player {
 
                 amove = m;
                 tempVal = response;
+                if (saveMove) {
+                    foundMove = m;
+                    _score = response;
+                }
                 alpha = Math.max(alpha, response);
                 if (beta <= alpha) {
                     break;
@@ -121,6 +460,10 @@ class AI extends Player {
         if (saveMove) {
             foundMove = amove;
         }
+        if (key != null) {
+            record(key, depth, tempVal, alpha0, beta0,
+                   canonicalMove(board, amove));
+        }
         return tempVal;
     }
 
@@ -133,17 +476,35 @@ class AI extends Player {
      * @return final score*/
     private int findMin(Board board, int depth, boolean saveMove,
                         int alpha, int beta) {
+        _nodes += 1;
+        if ((_nodes & (CHECK_INTERVAL - 1)) == 0) {
+            checkStop();
+        }
         if (board.winner() != null) {
             return staticScore(board, board.turn());
         }
+        Long key = null;
+        if (_table != null && !saveMove) {
+            key = board.canonicalKey();
+            Entry entry = probe(key, depth, alpha, beta);
+            if (entry != null) {
+                return entry.score;
+            }
+        }
+        int alpha0 = alpha, beta0 = beta;
         Move returnMove = null;
         int tempVal = WINNING_VALUE;
         for (Move m : board.legalMoves(BLACK)) {
+            if (saveMove && _excluded.contains(m)) {
+                continue;
+            }
             Board mvboard = new Board(board);
             mvboard.makeMove(m);
 
             int response;
-            if (depth == maxDepth(board)) {
+            if (mvboard.repeatedPosition()) {
+                response = WINNING_VALUE;
+            } else if (depth == maxDepth()) {
                 response = staticScore(mvboard, mvboard.turn());
             } else {
                 response = findMax(mvboard, depth + 1, false, alpha, beta);
@@ -157,6 +518,10 @@ class AI extends Player {
             if (response <= tempVal) {
                 returnMove = m;
                 tempVal = response;
+                if (saveMove) {
+                    foundMove = m;
+                    _score = response;
+                }
                 beta = Math.min(beta, response);
                 if (beta <= alpha) {
                     break;
@@ -166,6 +531,10 @@ class AI extends Player {
         if (saveMove) {
             foundMove = returnMove;
         }
+        if (key != null) {
+            record(key, depth, tempVal, alpha0, beta0,
+                   canonicalMove(board, returnMove));
+        }
         return tempVal;
     }
     /** Find a move from position BOARD and return its value, recording
@@ -189,22 +558,294 @@ class AI extends Player {
     }
 
 
-    /** Return a heuristically determined maximum search depth
-     *  based on characteristics of BOARD. */
-    private static int maxDepth(Board board) {
-        return 2;
+    /** Return the best COUNT moves (fewer if there are not that many
+     *  legal moves) for the side to move in POSITION, best first, each
+     *  with its score and principal variation.  Each move after the first
+     *  is found by searching again with the moves already found excluded
+     *  at the root; all these searches share one table of the positions
+     *  searched, so that later searches mostly reuse earlier work.  If
+     *  stopped (see stop), returns the moves found so far.  POSITION
+     *  itself is not modified. */
+    List<Variation> analyze(Board position, int count) {
+        Events.Search event = new Events.Search();
+        event.begin();
+        ArrayList<Variation> result = new ArrayList<>();
+        int sense = position.turn() == BLACK ? 1 : -1;
+        _tableCapacity = TABLE_CAPACITY;
+        _table = new HashMap<>(_tableCapacity, 1);
+        _nodes = 0;
+        _searchDepth = _depth;
+        startSearch(NO_DEADLINE);
+        try {
+            while (result.size() < count) {
+                Events.Iteration iteration = new Events.Iteration();
+                iteration.begin();
+                foundMove = null;
+                int score;
+                try {
+                    checkStop();
+                    score = findMove(searchBoard(position), 0, true, sense,
+                                     Integer.MIN_VALUE, Integer.MAX_VALUE);
+                } catch (SearchStopped excp) {
+                    break;
+                }
+                iteration.end();
+                commit(iteration, result.size() + 1, score);
+                if (foundMove == null) {
+                    break;
+                }
+                result.add(new Variation(foundMove, score,
+                                         principalVariation(position,
+                                                            foundMove)));
+                _excluded.add(foundMove);
+            }
+        } finally {
+            _table = null;
+            _excluded.clear();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.depth = _depth;
+            event.lines = count;
+            event.nodes = _nodes;
+            if (!result.isEmpty()) {
+                event.score = result.get(0).score();
+                event.move = result.get(0).move().toString();
+            }
+            event.commit();
+        }
+        return result;
+    }
+
+    /** Record ITERATION, a completed search to depth _searchDepth for
+     *  the line of rank RANK, which found foundMove with value SCORE, if
+     *  it is being recorded. */
+    private void commit(Events.Iteration iteration, int rank, int score) {
+        if (iteration.shouldCommit()) {
+            iteration.depth = _searchDepth;
+            iteration.rank = rank;
+            iteration.nodes = _nodes;
+            iteration.score = score;
+            iteration.move = foundMove == null ? null : foundMove.toString();
+            iteration.tableEntries = _table == null ? 0 : _table.size();
+            iteration.commit();
+        }
+    }
+
+    /** Return the principal variation beginning with FIRST from POSITION,
+     *  as recorded in _table by the last search. */
+    private List<Move> principalVariation(Board position, Move first) {
+        ArrayList<Move> result = new ArrayList<>();
+        Board b = position.detachedCopy();
+        Move next = first;
+        for (int depth = 1; next != null; depth += 1) {
+            result.add(next);
+            b.makeMove(next);
+            if (b.winner() != null || depth > maxDepth()) {
+                break;
+            }
+            Entry entry = _table.get(b.canonicalKey());
+            if (entry == null || entry.depth != depth
+                || entry.best == null) {
+                break;
+            }
+            next = entry.best.symmetric(
+                Square.inverseSymmetry(b.canonicalSymmetry()));
+            if (!b.isLegal(next)) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /** Return the entry in _table for the position with canonical key KEY
+     *  searched at DEPTH, if it determines the value of that position
+     *  within the window ALPHA..BETA, or null otherwise. */
+    private Entry probe(Long key, int depth, int alpha, int beta) {
+        Entry entry = _table.get(key);
+        if (entry == null || entry.depth != depth) {
+            return null;
+        }
+        switch (entry.bound) {
+        case EXACT:
+            return entry;
+        case LOWER:
+            return entry.score >= beta ? entry : null;
+        default:
+            return entry.score <= alpha ? entry : null;
+        }
+    }
+
+    /** Record in _table that the position with canonical key KEY,
+     *  searched at DEPTH within the window ALPHA..BETA, has value SCORE
+     *  and best move (in its canonical form) BEST. */
+    private void record(Long key, int depth, int score, int alpha,
+                        int beta, Move best) {
+        int bound = score <= alpha ? UPPER : score >= beta ? LOWER : EXACT;
+        _table.put(key, new Entry(depth, score, bound, best));
+        if (_table.size() > _tableCapacity / 4 * 3) {
+            growTable();
+        }
+    }
+
+    /** Move the entries of _table to a new table of twice the capacity,
+     *  recording the change as an event. */
+    private void growTable() {
+        Events.TableResize event = new Events.TableResize();
+        event.begin();
+        _tableCapacity *= 2;
+        HashMap<Long, Entry> table = new HashMap<>(_tableCapacity, 1);
+        table.putAll(_table);
+        _table = table;
+        event.end();
+        if (event.shouldCommit()) {
+            event.entries = _table.size();
+            event.capacity = _tableCapacity;
+            event.commit();
+        }
+    }
+
+    /** Return MOVE, a move on BOARD, as carried to BOARD's canonical form
+     *  (see Board.canonicalKey), or null if MOVE is null. */
+    private static Move canonicalMove(Board board, Move move) {
+        return move == null ? null
+            : move.symmetric(board.canonicalSymmetry());
     }
 
+    /** One line of an analysis: a move, its score (positive values
+     *  favoring white, as for staticScore) and the principal variation
+     *  that starts with it. */
+    static class Variation {
+        /** A Variation for MOVE with value SCORE and principal variation
+         *  PV. */
+        Variation(Move move, int score, List<Move> pv) {
+            _move = move;
+            _score = score;
+            _pv = pv;
+        }
+
+        /** Return the move analyzed. */
+        Move move() {
+            return _move;
+        }
+
+        /** Return the score of my move. */
+        int score() {
+            return _score;
+        }
+
+        /** Return the principal variation, starting with move(). */
+        List<Move> pv() {
+            return _pv;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder();
+            result.append(String.format("%s (%d):", _move, _score));
+            for (Move m : _pv) {
+                result.append(' ').append(m);
+            }
+            return result.toString();
+        }
+
+        /** The move analyzed. */
+        private final Move _move;
+        /** Its score. */
+        private final int _score;
+        /** Its principal variation. */
+        private final List<Move> _pv;
+    }
+
+    /** Kinds of values recorded in _table: exact values, and values that
+     *  are lower or upper bounds on the true value. */
+    private static final int EXACT = 0, LOWER = 1, UPPER = 2;
+
+    /** The result of searching a position. */
+    private static class Entry {
+        /** An Entry for a position searched at DEPTH with value SCORE of
+         *  kind BOUND, whose best move is BEST. */
+        Entry(int depth, int score, int bound, Move best) {
+            this.depth = depth;
+            this.score = score;
+            this.bound = bound;
+            this.best = best;
+        }
+
+        /** Depth of the search from the root. */
+        private final int depth;
+        /** Value found. */
+        private final int score;
+        /** One of EXACT, LOWER or UPPER. */
+        private final int bound;
+        /** Best move found, or null if none. */
+        private final Move best;
+    }
+
+    /** Table of positions searched, keyed by their canonicalKey(), during
+     *  an analysis, and otherwise null.  Positions related by symmetry,
+     *  which have the same value, share an entry, whose best move is
+     *  for the canonical form of the position. */
+    private HashMap<Long, Entry> _table;
+
+    /** Number of buckets in _table (a power of 2).  I replace the table
+     *  with one of twice the capacity when it is more than 3/4 full (see
+     *  growTable); since its load factor is 1, it never grows itself. */
+    private int _tableCapacity;
+
+    /** Initial number of buckets in _table. */
+    private static final int TABLE_CAPACITY = 16;
+
+    /** Moves excluded at the root of the current search. */
+    private final HashSet<Move> _excluded = new HashSet<>();
+
+    /** Return a copy of POSITION to search from, with an accumulator for
+     *  my network, if any, which its copies in the search inherit. */
+    private Board searchBoard(Board position) {
+        Board result = new Board(position);
+        if (_network != null) {
+            _network.attach(result);
+        }
+        return result;
+    }
+
+    /** Network used to evaluate positions, or null to evaluate them by
+     *  hand. */
+    private Network _network;
+
+    /** Return the depth of the search in progress: the depth (counting
+     *  from 0 at the root) of the last level whose moves it makes. */
+    private int maxDepth() {
+        return _searchDepth;
+    }
+
+    /** Greatest search depth (as for _depth) reached by a search under
+     *  a TimeManager. */
+    static final int MAX_TIMED_DEPTH = 16;
+
+    /** Search depth used unless another is specified. */
+    static final int DEFAULT_DEPTH = 2;
+
+    /** Number of levels I search. */
+    private final int _depth;
+
+    /** Number of levels searched by the current search: _depth, except
+     *  while deepening under a TimeManager. */
+    private int _searchDepth;
+
 
     /** Return a heuristic value for BOARD.
      * @param board : the complete board
      * @param turn the current turn.*/
-    private int staticScore(Board board, Piece turn) {
+    int staticScore(Board board, Piece turn) {
         if (board.winner() == BLACK) {
             return -WINNING_VALUE;
         } else if (board.winner() == WHITE) {
             return WINNING_VALUE;
         }
+        if (_network != null && board.accumulator() != null) {
+            return _network.evaluate(board);
+        }
 
         if (turn == WHITE || turn == KING) {
             return  evaluateWhite(board)
@@ -215,19 +856,107 @@ class AI extends Player {
         }
     }
 
+    /** Set SCORES[i] to staticScore(BOARDS[i], BOARDS[i].turn()) for
+     *  0 <= i < COUNT.  Intended for evaluating many positions at once:
+     *  the features of each position are gathered first, and then
+     *  combined for all of them by EvalKernel.BEST. */
+    void staticScores(Board[] boards, int count, int[] scores) {
+        staticScores(boards, count, scores, EvalKernel.BEST);
+    }
+
+    /** Set SCORES[i] to staticScore(BOARDS[i], BOARDS[i].turn()) for
+     *  0 <= i < COUNT, doing the arithmetic with KERNEL. */
+    void staticScores(Board[] boards, int count, int[] scores,
+                      EvalKernel kernel) {
+        if (_features[0].length < count) {
+            _features = new int[FEATURE_WEIGHTS.length][count];
+            Arrays.fill(_features[0], 1);
+        }
+        for (int i = 0; i < count; i += 1) {
+            gatherFeatures(boards[i], i);
+        }
+        kernel.combine(_features, FEATURE_WEIGHTS, count, scores);
+        for (int i = 0; i < count; i += 1) {
+            Board board = boards[i];
+            if (board.winner() != null) {
+                scores[i] = staticScore(board, board.turn());
+            } else if (_network != null && board.accumulator() != null) {
+                scores[i] = _network.evaluate(board, kernel);
+            }
+        }
+    }
+
+    /** Set column I of _features to the features of BOARD, as weighted
+     *  by FEATURE_WEIGHTS.  Leaves the column unchanged if BOARD's score
+     *  does not come from them. */
+    private void gatherFeatures(Board board, int i) {
+        if (board.winner() != null
+            || (_network != null && board.accumulator() != null)) {
+            return;
+        }
+        int whites = 0, blacks = 0;
+        for (int col = 0; col < Board.SIZE; col += 1) {
+            for (int row = 0; row < Board.SIZE; row += 1) {
+                Piece p = board.get(col, row);
+                if (p == BLACK) {
+                    blacks += 1;
+                } else if (p != EMPTY) {
+                    whites += 1;
+                }
+            }
+        }
+        Square king = board.kingPosition();
+        int neighbours = 0;
+        for (int dir = 0; dir < 4; dir += 1) {
+            Square adj = king.rookMove(dir, 1);
+            if (adj != null && board.get(adj) == BLACK) {
+                neighbours += 1;
+            }
+        }
+        _escapes.compute(board);
+        int sign = board.turn() == BLACK ? 1 : -1;
+        _features[1][i] = Math.min(_escapes.escapeDistance(), Board.SIZE);
+        _features[2][i] = whites;
+        _features[3][i] = blacks;
+        _features[4][i] =
+            board.turn() == WHITE && _escapes.oneMoveEscapes() > 0 ? 1 : 0;
+        _features[5][i] = sign * neighbours;
+        _features[6][i] = sign * board.getPieces(BLACK);
+        _features[7][i] = sign * board.getPieces(WHITE);
+        _features[8][i] = sign * board.moveCount();
+    }
+
+    /** The weights of the features gathered by gatherFeatures, which
+     *  are, in order: 1; the king's distance from escape (capped at
+     *  Board.SIZE); the numbers of white pieces (with the king) and of
+     *  black pieces; 1 if white, to move, can escape immediately and
+     *  otherwise 0; and, negated if white is to move, the number of black
+     *  pieces beside the king, the values of getPieces for black and for
+     *  white, and the move count.  The weighted sum of the features is
+     *  staticScore as computed by evaluateWhite and evaluateBlack. */
+    private static final int[] FEATURE_WEIGHTS = {
+        9 * 1000, -1000, 4 - 4 * 100, 2 * 100, WILL_WIN_VALUE,
+        -100, -2 * 100, 4 * 100, AI.THIRTY
+    };
+
+    /** Features of the positions being evaluated by staticScores, one
+     *  row per feature. */
+    private int[][] _features = new int[FEATURE_WEIGHTS.length][0];
+
     /**
      * Evaluates the state of the board in the perspective of the
      * Swdede aka WHITE player.
      * @param b board
      * @return  int*/
     public int evaluateWhite(Board b) {
-        int kingDistance = b.distanceToClosestCorner(b.kingPosition());
+        _escapes.compute(b);
+        int kingDistance = Math.min(_escapes.escapeDistance(), Board.SIZE);
         int whiteSize = ((b.pieceLocations(WHITE).size()) * 4);
         int black = b.pieceLocations(BLACK).size();
         int diff = ((black * 2) - (whiteSize)) * 100;
         int inc = 0;
 
-        if (b.unblockedcorner()) {
+        if (b.turn() == WHITE && _escapes.oneMoveEscapes() > 0) {
             inc = WILL_WIN_VALUE;
         }
         return ((9 - kingDistance) * 1000) + whiteSize  + diff + inc;
@@ -255,4 +984,8 @@ class AI extends Player {
     }
 /** assigning weight to the movecount.*/
     private static final int THIRTY = 30;
+
+    /** Escape distances of the king, recomputed for each position
+     *  evaluated. */
+    private final EscapeMap _escapes = new EscapeMap();
 }
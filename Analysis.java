@@ -0,0 +1,227 @@
+package tablut;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import ucb.util.CommandArgs;
+
+import static tablut.Utils.*;
+
+/** A service that analyzes a stream of positions on a fixed pool of
+ *  worker threads, each with its own engine.  Each request is a line
+ *  <pre>
+ *      POSITION [DEPTH]
+ *  </pre>
+ *  where POSITION is in the form returned by Board.encodedBoard() and
+ *  DEPTH is the depth to search (by default, the depth given to the
+ *  constructor).  Blank lines and lines starting with "#" are ignored.
+ *  Each request produces one line of output, in order of completion:
+ *  <pre>
+ *      N MOVE SCORE NODES MILLIS
+ *  </pre>
+ *  where N is the number of the request's line (from 1), MOVE the best
+ *  move ("none" if there is none), SCORE its value (favoring white, as for
+ *  AI.staticScore), NODES the number of positions searched, and MILLIS the
+ *  time taken, or else "N error: " and the reason the request is invalid
+ *  or its analysis failed.  Requests are read only as fast as the workers
+ *  can take them, so a client that floods the service is held back.
+ *  @author Vineet Vashist
+ */
+class Analysis {
+
+    /** A service analyzing on THREADS workers to a default depth of
+     *  DEPTH. */
+    Analysis(int threads, int depth) {
+        if (threads < 1 || depth < 0) {
+            throw error("bad analysis parameters");
+        }
+        _threads = threads;
+        _depth = depth;
+    }
+
+    /** Analyze the requests on INPUT until its end, writing the results
+     *  to OUTPUT.  Returns the number of requests. */
+    int run(BufferedReader input, Writer output) throws IOException {
+        BlockingQueue<Request> queue = new ArrayBlockingQueue<>(_threads);
+        PrintWriter out = new PrintWriter(output);
+        Thread[] workers = new Thread[_threads];
+        for (int i = 0; i < _threads; i += 1) {
+            workers[i] = new Thread(() -> work(queue, out),
+                                    "tablut-analysis-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        int requests = 0;
+        try {
+            int lineNum = 0;
+            for (String line = input.readLine(); line != null;
+                 line = input.readLine()) {
+                lineNum += 1;
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    queue.put(new Request(lineNum, line));
+                    requests += 1;
+                }
+            }
+            for (int i = 0; i < _threads; i += 1) {
+                queue.put(END);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IOException("analysis interrupted");
+        }
+        out.flush();
+        if (out.checkError()) {
+            throw new IOException("could not write results");
+        }
+        return requests;
+    }
+
+    /** Body of a worker: analyze requests from QUEUE and write the
+     *  results to OUT until taking END.  A request that fails for any
+     *  reason gets an error line, rather than ending the worker and
+     *  leaving the rest of its requests unanswered; after an unexpected
+     *  failure, the worker starts again with a new board and engine. */
+    private void work(BlockingQueue<Request> queue, PrintWriter out) {
+        Board board = new Board();
+        AI engine = new AI(_depth);
+        try {
+            for (Request r = queue.take(); r != END; r = queue.take()) {
+                String result;
+                try {
+                    int depth = r.depth(_depth);
+                    if (depth != engine.depth()) {
+                        engine = new AI(depth);
+                    }
+                    board.setEncodedBoard(r.position());
+                    result = analyze(engine, board);
+                } catch (IllegalArgumentException excp) {
+                    result = "error: " + excp.getMessage();
+                } catch (RuntimeException excp) {
+                    result = "error: " + excp;
+                    board = new Board();
+                    engine = new AI(_depth);
+                }
+                synchronized (out) {
+                    out.printf("%d %s%n", r.lineNum, result);
+                    if (queue.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            }
+        } catch (InterruptedException excp) {
+            return;
+        }
+    }
+
+    /** Return the result line (less the request number) for the position
+     *  on BOARD as analyzed by ENGINE. */
+    String analyze(AI engine, Board board) {
+        long start = System.nanoTime();
+        List<AI.Variation> lines =
+            board.winner() == null ? engine.analyze(board, 1) : List.of();
+        long millis = (System.nanoTime() - start) / 1000000;
+        if (lines.isEmpty()) {
+            return String.format("none %d %d %d",
+                                 engine.staticScore(board, board.turn()),
+                                 0, millis);
+        }
+        AI.Variation best = lines.get(0);
+        return String.format("%s %d %d %d", best.move(), best.score(),
+                             engine.nodes(), millis);
+    }
+
+    /** One line of input. */
+    private static class Request {
+        /** The request on line LINENUM, whose text is TEXT. */
+        Request(int lineNum, String text) {
+            this.lineNum = lineNum;
+            this.text = text;
+        }
+
+        /** Return the position requested. */
+        String position() {
+            int end = text.indexOf(' ');
+            return end < 0 ? text : text.substring(0, end);
+        }
+
+        /** Return the depth requested, or DEFLT if none was. */
+        int depth(int deflt) {
+            int start = text.indexOf(' ');
+            if (start < 0) {
+                return deflt;
+            }
+            try {
+                int depth = Integer.parseInt(text.substring(start).trim());
+                if (depth < 0) {
+                    throw error("bad depth");
+                }
+                return depth;
+            } catch (NumberFormatException excp) {
+                throw error("bad depth");
+            }
+        }
+
+        /** Input line number. */
+        final int lineNum;
+        /** Text of the line. */
+        final String text;
+    }
+
+    /** Marks the end of the requests. */
+    private static final Request END = new Request(0, "");
+
+    /** Analyze the positions on the standard input or the file given in
+     *  ARGS, as directed by ARGS (see the usage message). */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--threads={0,1} --depth={0,1} --={0,2}", args);
+        if (!options.ok()) {
+            fatal("Usage: java tablut.Analysis [--threads=N] [--depth=D]"
+                  + " [INPUT [OUTPUT]]%n");
+        }
+        Analysis service = null;
+        try {
+            service = new Analysis(
+                options.contains("--threads")
+                ? Integer.parseInt(options.getFirst("--threads"))
+                : Runtime.getRuntime().availableProcessors(),
+                options.contains("--depth")
+                ? Integer.parseInt(options.getFirst("--depth"))
+                : AI.DEFAULT_DEPTH);
+        } catch (NumberFormatException excp) {
+            fatal("Bad number: %s%n", excp.getMessage());
+        } catch (IllegalArgumentException excp) {
+            fatal("%s%n", excp.getMessage());
+        }
+        List<String> files = options.get("--");
+        try {
+            BufferedReader input = new BufferedReader(new InputStreamReader(
+                files.isEmpty() ? System.in
+                : new FileInputStream(files.get(0))));
+            OutputStream output = files.size() > 1
+                ? new FileOutputStream(files.get(1)) : System.out;
+            service.run(input, new OutputStreamWriter(output));
+        } catch (IOException excp) {
+            fatal("%s%n", excp.getMessage());
+        }
+    }
+
+    /** Number of workers. */
+    private final int _threads;
+    /** Default search depth. */
+    private final int _depth;
+}
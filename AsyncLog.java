@@ -0,0 +1,173 @@
+package tablut;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPOutputStream;
+
+/** A line-oriented log written by a background thread.  Callers only
+ *  queue lines, waiting only if the queue is full; the writer thread takes
+ *  all queued lines at once and writes them through a large buffer, which
+ *  it flushes only when asked to.
+ *  @author Vineet Vashist
+ */
+final class AsyncLog implements Closeable {
+
+    /** Return a log writing to the file NAME, which is compressed with
+     *  gzip iff NAME ends in ".gz". */
+    static AsyncLog open(String name) throws IOException {
+        OutputStream out = new FileOutputStream(name);
+        if (name.endsWith(".gz")) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        return new AsyncLog(out);
+    }
+
+    /** A log writing to OUT. */
+    AsyncLog(OutputStream out) {
+        _out = new BufferedWriter(
+            new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        Thread writer = new Thread(this::run, "tablut-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Queue LINE to be written to the log. */
+    void println(String line) {
+        enqueue(line);
+    }
+
+    /** Queue a line formatted from FORMAT and ARGS, as for
+     *  String.format. */
+    void printf(String format, Object... args) {
+        enqueue(String.format(format, args));
+    }
+
+    /** Wait until all lines queued so far have been written out.  Throws
+     *  IOException if any of them could not be written.  Has no effect
+     *  if closed. */
+    void flush() throws IOException {
+        if (!_closed) {
+            await(new CountDownLatch(1));
+        }
+    }
+
+    /** Write out all queued lines, close the file, and stop the writer
+     *  thread.  Throws IOException if anything could not be written.
+     *  Has no effect if already closed. */
+    @Override
+    public void close() throws IOException {
+        if (!_closed) {
+            _closed = true;
+            await(_closing);
+        }
+    }
+
+    /** Queue ITEM for the writer thread. */
+    private void enqueue(Object item) {
+        if (_closed) {
+            return;
+        }
+        try {
+            _queue.put(item);
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Queue DONE for the writer thread, which counts it down once it has
+     *  written and flushed everything queued before it, and wait for
+     *  that.  Throws any error the writer has encountered. */
+    private void await(CountDownLatch done) throws IOException {
+        try {
+            _queue.put(done);
+            done.await();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while writing log");
+        }
+        if (_error != null) {
+            throw _error;
+        }
+    }
+
+    /** Body of the writer thread. */
+    private void run() {
+        ArrayList<Object> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(_queue.take());
+                _queue.drainTo(batch);
+                for (Object item : batch) {
+                    if (item instanceof String) {
+                        write((String) item);
+                    } else {
+                        CountDownLatch done = (CountDownLatch) item;
+                        flushOut(done == _closing);
+                        done.countDown();
+                        if (done == _closing) {
+                            return;
+                        }
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException excp) {
+            return;
+        }
+    }
+
+    /** Write LINE, unless an error has already occurred. */
+    private void write(String line) {
+        if (_error == null) {
+            try {
+                _out.write(line);
+                _out.write(System.lineSeparator());
+            } catch (IOException excp) {
+                _error = excp;
+            }
+        }
+    }
+
+    /** Flush the output, and then close it iff CLOSE. */
+    private void flushOut(boolean close) {
+        try {
+            if (_error == null) {
+                _out.flush();
+            }
+            if (close) {
+                _out.close();
+            }
+        } catch (IOException excp) {
+            if (_error == null) {
+                _error = excp;
+            }
+        }
+    }
+
+    /** Size of the output buffer in characters (bytes for gzip). */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Maximum number of lines waiting to be written. */
+    private static final int QUEUE_SIZE = 4096;
+
+    /** Lines (Strings) waiting to be written, and latches to count down
+     *  when everything before them is written. */
+    private final ArrayBlockingQueue<Object> _queue =
+        new ArrayBlockingQueue<>(QUEUE_SIZE);
+    /** The latch that asks the writer to close the output. */
+    private final CountDownLatch _closing = new CountDownLatch(1);
+    /** Destination of the log. */
+    private final Writer _out;
+    /** True once close has been called. */
+    private volatile boolean _closed;
+    /** The first error in writing, if any. */
+    private volatile IOException _error;
+}
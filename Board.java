@@ -3,10 +3,10 @@ package tablut;
 
 import java.util.HashSet;
 import java.util.ArrayList;
-import java.util.Stack;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Formatter;
+import java.util.Random;
 
 import static tablut.Move.ROOK_MOVES;
 import static tablut.Piece.*;
@@ -78,11 +78,31 @@ class Board {
         this._movelimit = model._movelimit;
         this.movelist = model.movelist;
         this._repeated = model._repeated;
-        this.trackUndostr = model.trackUndostr;
-        this.trackUndo = model.trackUndo;
+        this._key = model._key;
+        this._symmetricKeysValid = false;
+        this._history = model._history;
+        this._irreversiblePly = model._irreversiblePly;
+        this._undo = model._undo;
+        this._undoSize = model._undoSize;
+        this._undoBase = model._undoSize;
+        this._accumulator = model._accumulator;
 
     }
 
+    /** Return a copy of me whose undo stack, set of encountered positions
+     *  and accumulator are my own, rather than shared with this board, so
+     *  that it may be played on independently (e.g., by another
+     *  thread). */
+    Board detachedCopy() {
+        Board result = new Board(this);
+        result._undo = _undo.clone();
+        result._history = _history.clone();
+        if (_accumulator != null) {
+            result._accumulator = _accumulator.copy();
+        }
+        return result;
+    }
+
     /** Clears the board to the initial position. */
     void init() {
         squares = new Square[SIZE][SIZE];
@@ -116,6 +136,94 @@ class Board {
             }
 
         }
+        _key = BLACK_TO_MOVE;
+        _symmetricKeysValid = false;
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                _key ^= ZOBRIST[pieces[i][j].ordinal()][j * SIZE + i];
+            }
+        }
+        _repeated = false;
+        _history = new long[INITIAL_HISTORY];
+        _undo = new int[INITIAL_UNDO];
+        clearUndo();
+        if (_accumulator != null) {
+            _accumulator.refresh(this);
+        }
+    }
+
+    /** Set me to the position ENCODED, in the form returned by
+     *  encodedBoard(), with no moves made and no move limit.  Throws
+     *  IllegalArgumentException if ENCODED is not of that form. */
+    void setEncodedBoard(String encoded) {
+        if (encoded.length() != NUM_SQUARES + 1) {
+            throw new IllegalArgumentException("bad board length");
+        }
+        Piece turn = decodePiece(encoded.charAt(0));
+        if (turn != WHITE && turn != BLACK) {
+            throw new IllegalArgumentException("bad side to move");
+        }
+        Piece[] contents = new Piece[NUM_SQUARES];
+        for (int i = 0; i < NUM_SQUARES; i += 1) {
+            contents[i] = decodePiece(encoded.charAt(i + 1));
+        }
+        setPosition(contents, turn, 0, -1);
+    }
+
+    /** Set me to the position in which the square with index i holds
+     *  CONTENTS[i] and SIDE is to move, as if after MOVECOUNT moves, with
+     *  move limit LIMIT (-1 for none) and no moves to undo.  Reuses my
+     *  storage, so that setting up many positions allocates nothing. */
+    void setPosition(Piece[] contents, Piece side, int moveCount,
+                     int limit) {
+        assert side == WHITE || side == BLACK;
+        assert limit == -1 || 2 * limit > moveCount;
+        _key = side == BLACK ? BLACK_TO_MOVE : 0;
+        _symmetricKeysValid = false;
+        for (int i = 0; i < NUM_SQUARES; i += 1) {
+            pieces[i % SIZE][i / SIZE] = contents[i];
+            _key ^= ZOBRIST[contents[i].ordinal()][i];
+        }
+        _turn = side;
+        _moveCount = moveCount;
+        _movelimit = limit;
+        _winner = null;
+        _repeated = false;
+        clearUndo();
+        myWinner();
+        if (_accumulator != null) {
+            _accumulator.refresh(this);
+        }
+    }
+
+    /** Return the Network accumulator kept up to date with my position,
+     *  or null if none. */
+    Network.Accumulator accumulator() {
+        return _accumulator;
+    }
+
+    /** Keep ACC up to date with my position from now on (stop keeping one
+     *  if ACC is null).  ACC must already agree with my position.  Copies
+     *  of me share ACC, as they do my undo stack: moves made on a copy
+     *  change it, and it agrees with my position again once they are
+     *  undone (by undo or aIundo).  detachedCopy() copies it. */
+    void setAccumulator(Network.Accumulator acc) {
+        _accumulator = acc;
+    }
+
+    /** Return the move limit, or -1 if there is none. */
+    int moveLimit() {
+        return _movelimit;
+    }
+
+    /** Return the Piece whose toString() is C. */
+    private static Piece decodePiece(char c) {
+        for (Piece p : Piece.values()) {
+            if (p.toString().charAt(0) == c) {
+                return p;
+            }
+        }
+        throw new IllegalArgumentException("bad piece: " + c);
     }
 
     /** Set the move limit to LIM.  It is an error if 2*LIM <= moveCount().
@@ -140,18 +248,86 @@ class Board {
 
     /** Returns true iff this is a win due to a repeated position. */
     boolean repeatedPosition() {
-        checkRepeated();
         return _repeated;
     }
 
     /** Record current position and set winner() next mover if the current
-     *  position is a repeat. */
+     *  position is a repeat.  Only positions since the last capture (or
+     *  clearUndo) can repeat the current one, and only those with the
+     *  same side to move, so only those are compared. */
     private void checkRepeated() {
-        if (trackUndostr.contains(this.encodedBoard())) {
-            _winner = turn();
-            _repeated = true;
+        if (_moveCount >= _history.length) {
+            _history = Arrays.copyOf(_history, 2 * _history.length);
         }
+        _history[_moveCount] = _key;
+        for (int ply = _moveCount - 2; ply >= _irreversiblePly; ply -= 2) {
+            if (_history[ply] == _key) {
+                _winner = turn();
+                _repeated = true;
+                return;
+            }
+        }
+    }
+
+    /** Return a hash of the current position (the pieces on each square
+     *  and the side to move).  Equal positions have equal keys. */
+    long positionKey() {
+        return _key;
+    }
+
+    /** Return the positionKey() of the position that symmetry number SYM
+     *  (see Square.NUM_SYMMETRIES) makes of mine. */
+    long symmetricKey(int sym) {
+        return symmetricKeys()[sym];
+    }
 
+    /** Return a key that is the same for all positions related to mine
+     *  by symmetry (and otherwise different, as for positionKey()): the
+     *  positionKey() of my canonical form, the least of their keys. */
+    long canonicalKey() {
+        return symmetricKeys()[canonicalSymmetry()];
+    }
+
+    /** Return the number of a symmetry that carries my position to its
+     *  canonical form (the lowest, if several do). */
+    int canonicalSymmetry() {
+        long[] keys = symmetricKeys();
+        int result = 0;
+        for (int s = 1; s < NUM_SYMMETRIES; s += 1) {
+            if (keys[s] < keys[result]) {
+                result = s;
+            }
+        }
+        return result;
+    }
+
+    /** Return the array of symmetricKey(s) for each s, computing them
+     *  unless they are known for the current position.  They are not
+     *  kept up to date as the position changes, since only callers
+     *  looking positions up in tables need them, and one pass over the
+     *  board computes all of them. */
+    private long[] symmetricKeys() {
+        if (_symmetricKeys == null) {
+            _symmetricKeys = new long[NUM_SYMMETRIES];
+        } else if (_symmetricKeysValid) {
+            return _symmetricKeys;
+        }
+        long[] keys = _symmetricKeys;
+        Arrays.fill(keys, _turn == BLACK ? BLACK_TO_MOVE : 0);
+        for (int col = 0; col < SIZE; col += 1) {
+            for (int row = 0; row < SIZE; row += 1) {
+                Piece p = pieces[col][row];
+                if (p != EMPTY) {
+                    long[] zobrist = SYMMETRIC_ZOBRIST[p.ordinal()];
+                    int k = (row * SIZE + col) * NUM_SYMMETRIES;
+                    for (int s = 0; s < NUM_SYMMETRIES; s += 1) {
+                        keys[s] ^= zobrist[k + s];
+                    }
+                }
+            }
+        }
+        _symmetricKeysValid = true;
+        return keys;
     }
 
     /** Return the number of moves since the initial position that have not been
@@ -176,7 +352,7 @@ class Board {
     private void myWinner() {
         if (kingPosition() == null) {
             _winner = BLACK;
-        } else if (legalMoves(turn()).size() == 0) {
+        } else if (!hasMove(turn())) {
             _winner = turn().opponent();
         } else {
             if (kingPosition().isEdge()) {
@@ -205,14 +381,25 @@ class Board {
 
     /** Set square S to P and record for undoing. */
     final void put(Piece p, Square s) {
-
-        pieces[s.col()][s.row()] = p;
+        set(p, s.col(), s.row());
     }
 
 
     /** Set square S to P. */
     final void revPut(Piece p, Square s) {
-        pieces[s.col()][s.row()] = p;
+        set(p, s.col(), s.row());
+    }
+
+    /** Set square COL ROW to P, updating the position key. */
+    private void set(Piece p, int col, int row) {
+        int index = row * SIZE + col;
+        _symmetricKeysValid = false;
+        _key ^= ZOBRIST[pieces[col][row].ordinal()][index]
+            ^ ZOBRIST[p.ordinal()][index];
+        if (_accumulator != null) {
+            _accumulator.change(pieces[col][row], p, index);
+        }
+        pieces[col][row] = p;
     }
 
     /** Set square COL ROW to P. */
@@ -272,29 +459,42 @@ class Board {
     void makeMove(Square from, Square to) {
         assert isLegal(from, to);
 
-        if (trackUndo.empty()) {
-            Board prevBoard = new Board();
-            trackUndo.push(prevBoard);
-            trackUndostr.add(prevBoard.encodedBoard());
-
-        } else {
-            Board prevBoard = new Board(this);
-            trackUndo.push(prevBoard);
-            trackUndostr.add(prevBoard.encodedBoard());
-        }
+        int irreversiblePly = _irreversiblePly;
+        int header = from.index() | to.index() << UNDO_TO
+            | (_winner == null ? NO_WINNER : _winner.ordinal()) << UNDO_WINNER;
+        _captures = 0;
 
         Piece temp = pieces[from.col()][from.row()];
 
         put(temp, to);
         put(EMPTY, from);
 
+        _captured = false;
         findAllCaptures(to);
 
         _turn = this.turn().opponent();
+        _key ^= BLACK_TO_MOVE;
+        _symmetricKeysValid = false;
 
         _moveCount++;
+        if (_captured) {
+            _irreversiblePly = _moveCount;
+        }
 
-        repeatedPosition();
+        pushUndo(irreversiblePly);
+        pushUndo(_movelimit);
+        pushUndo(header | _captures << UNDO_CAPTURES);
+
+        checkRepeated();
+    }
+
+    /** Push V onto the undo stack. */
+    private void pushUndo(int v) {
+        if (_undoSize == _undo.length) {
+            _undo = Arrays.copyOf(_undo, 2 * _undo.length);
+        }
+        _undo[_undoSize] = v;
+        _undoSize += 1;
     }
 
     /** Move according to MOVE, assuming it is a legal move. */
@@ -320,7 +520,10 @@ class Board {
      *  SQ0 and the necessary conditions are satisfied. */
     private void capture(Square sq0, Square sq2) {
         Square die = sq0.between(sq2);
-        pieces[die.col()][die.row()] = EMPTY;
+        pushUndo(die.index() | get(die).ordinal() << UNDO_TO);
+        _captures += 1;
+        set(EMPTY, die.col(), die.row());
+        _captured = true;
     }
 
     /** Function to find all the captured moves.
@@ -427,49 +630,84 @@ class Board {
         }
     }
 
-    /** Undo one move.  Has no effect on the initial board. */
+    /** Undo one move.  Has no effect on the initial board, or if no
+     *  moves have been made since the last clearUndo. */
     void undo() {
-        if (_moveCount > 0) {
+        if (_moveCount > 0 && _undoSize > 0) {
             undoPosition();
         }
     }
 
-    /** Remove record of current position in the set of positions encountered,
-     *  unless it is a repeated position or we are at the first move. */
+    /** Restore the position before the last move from the top record of
+     *  the undo stack, and pop it.  A record is the pieces captured (each
+     *  the index of its square | its ordinal << UNDO_TO), the values of
+     *  _irreversiblePly and _movelimit before the move, and a header
+     *  giving the squares moved from and to, the winner before the move,
+     *  and the number of captures. */
     private void undoPosition() {
-        Board tempboard = trackUndo.pop();
-        trackUndostr.remove(tempboard.encodedBoard());
-
-        this._moveCount = tempboard._moveCount;
-        this._turn = tempboard._turn;
-        this._winner = tempboard._winner;
-        this.pieces = tempboard.pieces;
-        this._movelimit = tempboard._movelimit;
-        this.movelist = tempboard.movelist;
-        this.squares = tempboard.squares;
-
+        int header = _undo[_undoSize - 1];
+        _movelimit = _undo[_undoSize - 2];
+        _irreversiblePly = _undo[_undoSize - 3];
+        _undoSize -= 3;
+        for (int k = header >>> UNDO_CAPTURES; k > 0; k -= 1) {
+            _undoSize -= 1;
+            int capture = _undo[_undoSize];
+            Square s = sq(capture & SQUARE_MASK);
+            set(Piece.values()[capture >>> UNDO_TO], s.col(), s.row());
+        }
+        Square from = sq(header & SQUARE_MASK),
+            to = sq((header >>> UNDO_TO) & SQUARE_MASK);
+        set(get(to), from.col(), from.row());
+        set(EMPTY, to.col(), to.row());
+
+        int winner = (header >>> UNDO_WINNER) & WINNER_MASK;
+        _winner = winner == NO_WINNER ? null : Piece.values()[winner];
+        _turn = _turn.opponent();
+        _key ^= BLACK_TO_MOVE;
+        _symmetricKeysValid = false;
+        _moveCount -= 1;
         _repeated = false;
     }
 
     /** Clear the undo stack and board-position counts. Does not modify the
      *  current position or win status. */
     void clearUndo() {
-
-        trackUndostr.clear();
-        trackUndo.removeAllElements();
-
+        _undoSize = 0;
+        _undoBase = 0;
+        _irreversiblePly = _moveCount;
+        if (_moveCount >= _history.length) {
+            _history = Arrays.copyOf(_history, _moveCount + INITIAL_HISTORY);
+        }
+        _history[_moveCount] = _key;
     }
 
-    /** Undo used for the AI while checking for moves.*/
+    /** Undo used for the AI while checking for moves: pops the record of
+     *  the last move without restoring the position, except in the
+     *  accumulator, which is shared with the board I was copied from. */
     void aIundo() {
-        Board tempboard = trackUndo.pop();
-        trackUndostr.remove(tempboard.encodedBoard());
+        int header = _undo[_undoSize - 1];
+        int captures = header >>> UNDO_CAPTURES;
+        if (_accumulator != null && _undoSize > _undoBase) {
+            int from = header & SQUARE_MASK,
+                to = (header >>> UNDO_TO) & SQUARE_MASK;
+            Piece moved = pieces[to % SIZE][to / SIZE];
+            _accumulator.change(moved, EMPTY, to);
+            _accumulator.change(EMPTY, moved, from);
+            for (int k = 1; k <= captures; k += 1) {
+                int capture = _undo[_undoSize - 3 - k];
+                _accumulator.change(EMPTY, Piece.values()[capture >>> UNDO_TO],
+                                    capture & SQUARE_MASK);
+            }
+        }
+        _undoSize -= 3 + captures;
         _moveCount--;
     }
 
     /** Return a new mutable list of all legal moves on the current board for
      *  SIDE (ignoring whose turn it is at the moment). */
     List<Move> legalMoves(Piece side) {
+        Events.MoveGeneration event = new Events.MoveGeneration();
+        event.begin();
         movelist = new ArrayList<>();
         for (int i = 0; i < SIZE; i++) {
             for (int j = 0; j < SIZE; j++) {
@@ -490,17 +728,36 @@ class Board {
                 }
             }
         }
+        event.end();
+        if (event.shouldCommit()) {
+            event.side = side.toName();
+            event.moves = movelist.size();
+            event.commit();
+        }
         return movelist;
     }
 
-    /** Return true iff SIDE has a legal move. */
+    /** Return true iff SIDE has a legal move.  Stops at the first one
+     *  found, without building a list. */
     boolean hasMove(Piece side) {
-
-        List<Move> mymovelist = legalMoves(side);
-        if (mymovelist.size() <= 0) {
-            return false;
+        for (int i = 0; i < NUM_SQUARES; i += 1) {
+            Piece p = pieces[i % SIZE][i / SIZE];
+            if (p == side || (side == WHITE && p == KING)) {
+                for (int dir = 0; dir < 4; dir += 1) {
+                    List<Move> moves = ROOK_MOVES[i][dir];
+                    for (int k = 0; k < moves.size(); k += 1) {
+                        Square to = moves.get(k).to();
+                        if (get(to) != EMPTY) {
+                            break;
+                        }
+                        if (to != THRONE) {
+                            return true;
+                        }
+                    }
+                }
+            }
         }
-        return true;
+        return false;
     }
 
     @Override
@@ -562,14 +819,6 @@ class Board {
 
     }
 
-    /** Given a coordinate, returns the distance between the SQAURE
-     *  and the closest corner.
-     *  @param kingPos position of the king.*/
-
-    public int distanceToClosestCorner(Square kingPos) {
-        return Math.min((SIZE - kingPos.col()), (SIZE - kingPos.row()));
-    }
-
     /** Distance between two squares.
      * @param to : move to.
      * @param from  : move from
@@ -592,19 +841,11 @@ class Board {
         }
         return corners;
     }
-/** Boolena Function to find is the king has any unblocked corner space.
- * @return  Boolean */
+    /** Return true iff it is white's move and the king has an unblocked
+     *  move to an edge square. */
     public boolean unblockedcorner() {
-        Square kinpos =  kingPosition();
-        if (kinpos != null) {
-            for (Square corner : getCorners()) {
-                if (isLegal(kingPosition(), corner)) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        return _turn == WHITE
+            && new EscapeMap().compute(this).oneMoveEscapes() > 0;
     }
     /**.
      * Finds the coordinates of the neighbours of a piece.
@@ -626,7 +867,17 @@ class Board {
 
     /** Returns the current size of the stack. */
     public void stacksize() {
-        System.out.println("Current undo stack size : " + trackUndo.size());
+        System.out.println("Current undo stack size : " + undoDepth());
+    }
+
+    /** Return the number of moves on my undo stack. */
+    int undoDepth() {
+        int moves;
+        int top = _undoSize;
+        for (moves = 0; top > 0; moves += 1) {
+            top -= 3 + (_undo[top - 1] >>> UNDO_CAPTURES);
+        }
+        return moves;
     }
 
     /** Function to return the no. of pieces of the SIDE on the board.
@@ -674,11 +925,99 @@ class Board {
     /** 2D array containing each square on the board. */
     private Square[][] squares;
 
-    /** Stack containing the board state for undo and repeated checks. */
-    private Stack<Board> trackUndo = new Stack<Board>();
-
-    /** Hashset containing the encoded board state . */
-    private  HashSet<String> trackUndostr = new HashSet<String>();
+    /** Stack of records of the moves made, for undo (see undoPosition).
+     *  Shared with copies of this board, which only write beyond their
+     *  own _undoSize. */
+    private int[] _undo;
+
+    /** Number of ints in use in _undo. */
+    private int _undoSize;
+
+    /** Value of _undoSize when I was copied from another board.  The
+     *  records below it are that board's moves. */
+    private int _undoBase;
+
+    /** Hidden values of a Network for the current position, or null.
+     *  Shared with copies of this board (see setAccumulator). */
+    private Network.Accumulator _accumulator;
+
+    /** Number of pieces captured so far by the current move. */
+    private int _captures;
+
+    /** Hash of the current position, as returned by positionKey(). */
+    private long _key;
+
+    /** Storage for symmetricKeys(), or null if not yet needed. */
+    private long[] _symmetricKeys;
+    /** True iff _symmetricKeys holds the keys of the current position. */
+    private boolean _symmetricKeysValid;
+
+    /** _history[k] is the positionKey() after move k, for each move up to
+     *  the current one.  Shared with copies of this board, which only
+     *  write beyond their own move count. */
+    private long[] _history;
+
+    /** The move count just after the last capture or clearUndo.  No
+     *  position before it can recur. */
+    private int _irreversiblePly;
+
+    /** True iff a piece has been captured since the start of the current
+     *  move. */
+    private boolean _captured;
+
+    /** Initial length of _history. */
+    private static final int INITIAL_HISTORY = 256;
+
+    /** Initial length of _undo. */
+    private static final int INITIAL_UNDO = 64;
+
+    /** Shifts of the fields of an undo record header (see undoPosition):
+     *  the square moved to (and the piece of a capture), the winner before
+     *  the move, and the number of captures. */
+    private static final int UNDO_TO = 7, UNDO_WINNER = 14,
+        UNDO_CAPTURES = 17;
+
+    /** Masks of a square index and a winner in an undo record. */
+    private static final int SQUARE_MASK = 0x7F, WINNER_MASK = 7;
+
+    /** Value of the winner field of an undo record for no winner. */
+    private static final int NO_WINNER = WINNER_MASK;
+
+    /** ZOBRIST[p][i] is the contribution to positionKey() of Piece with
+     *  ordinal p on the square with index i.  Empty squares contribute
+     *  nothing. */
+    private static final long[][] ZOBRIST =
+        new long[Piece.values().length][NUM_SQUARES];
+
+    /** SYMMETRIC_ZOBRIST[p][i * NUM_SYMMETRIES + s] is the contribution
+     *  to symmetricKey(s) of Piece with ordinal p on the square with index
+     *  i: ZOBRIST[p] for the square to which symmetry s carries it. */
+    private static final long[][] SYMMETRIC_ZOBRIST =
+        new long[Piece.values().length][NUM_SQUARES * NUM_SYMMETRIES];
+
+    /** The contribution to positionKey() of black being the side to
+     *  move. */
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        Random keys = new Random(0x7AB1F);
+        for (Piece p : Piece.values()) {
+            if (p != EMPTY) {
+                for (int i = 0; i < NUM_SQUARES; i += 1) {
+                    ZOBRIST[p.ordinal()][i] = keys.nextLong();
+                }
+            }
+        }
+        BLACK_TO_MOVE = keys.nextLong();
+        for (Piece p : Piece.values()) {
+            for (int i = 0; i < NUM_SQUARES; i += 1) {
+                for (int s = 0; s < NUM_SYMMETRIES; s += 1) {
+                    SYMMETRIC_ZOBRIST[p.ordinal()][i * NUM_SYMMETRIES + s] =
+                        ZOBRIST[p.ordinal()][Square.symmetric(s, i)];
+                }
+            }
+        }
+    }
 
     /** List of moves. */
     private List<Move> movelist;
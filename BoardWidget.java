@@ -2,17 +2,26 @@ package tablut;
 
 import ucb.gui2.Pad;
 
+import java.util.EnumMap;
 import java.util.concurrent.ArrayBlockingQueue;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Font;
+import java.awt.RenderingHints;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 
 import static tablut.Piece.*;
 import static tablut.Square.sq;
 
-/** A widget that displays a Tablut game.
+/** A widget that displays a Tablut game.  The board is drawn into an
+ *  off-screen image, which painting merely copies to the screen.  When the
+ *  position changes, only the squares whose contents changed are redrawn
+ *  in the image and repainted, each by stamping a pre-rendered image
+ *  (sprite) of its piece.
  *  @author vi
  */
 class BoardWidget extends Pad {
@@ -78,13 +87,70 @@ class BoardWidget extends Pad {
 
     @Override
     public synchronized void paintComponent(Graphics2D g) {
-        drawGrid(g);
-        Square.SQUARE_LIST.iterator().forEachRemaining(s -> drawPiece(g, s));
+        g.drawImage(image(), 0, 0, null);
     }
 
-    /** Draw the contents of S on G. */
+    /** Return the off-screen image of the board, drawing all of it first
+     *  if it does not yet exist. */
+    private BufferedImage image() {
+        if (_image == null) {
+            _image = new BufferedImage(BOARD_SIDE, BOARD_SIDE,
+                                       BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = _image.createGraphics();
+            drawGrid(g);
+            for (Square s : Square.SQUARE_LIST) {
+                drawPiece(g, s);
+            }
+            g.dispose();
+        }
+        return _image;
+    }
+
+    /** Draw the contents of S on G, which already shows the bare
+     *  board. */
     private void drawPiece(Graphics2D g, Square s) {
+        BufferedImage sprite = SPRITES.get(_pieces[s.index()]);
+        if (sprite != null) {
+            g.drawImage(sprite, cx(s), cy(s), null);
+        }
+    }
 
+    /** Redraw square S on G, erasing its old contents. */
+    private void redrawSquare(Graphics2D g, Square s) {
+        g.setColor(s == Board.THRONE ? THRONE_COLOR : SQUARE_COLOR);
+        g.fillRect(cx(s), cy(s), SQUARE_SIDE, SQUARE_SIDE);
+        g.setColor(GRID_LINE_COLOR);
+        g.drawRect(cx(s), cy(s), SQUARE_SIDE, SQUARE_SIDE);
+        drawPiece(g, s);
+    }
+
+    /** Return the sprite for PIECE: a disk of the piece's color, marked
+     *  with a "K" for the king, on a transparent square of side
+     *  SQUARE_SIDE. */
+    private static BufferedImage sprite(Piece piece) {
+        BufferedImage result =
+            new BufferedImage(SQUARE_SIDE, SQUARE_SIDE,
+                              BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = result.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                           RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                           RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        int diameter = SQUARE_SIDE - 2 * PIECE_INSET;
+        g.setColor(piece == BLACK ? BLACK_COLOR : WHITE_COLOR);
+        g.fillOval(PIECE_INSET, PIECE_INSET, diameter, diameter);
+        g.setColor(BLACK_COLOR);
+        g.setStroke(new BasicStroke(1.5f));
+        g.drawOval(PIECE_INSET, PIECE_INSET, diameter, diameter);
+        if (piece == KING) {
+            g.setFont(KING_FONT);
+            FontMetrics metrics = g.getFontMetrics();
+            g.drawString("K", (SQUARE_SIDE - metrics.stringWidth("K")) / 2,
+                         (SQUARE_SIDE + metrics.getAscent()
+                          - metrics.getDescent()) / 2);
+        }
+        g.dispose();
+        return result;
     }
 
     /** Handle a click on S. */
@@ -104,10 +170,26 @@ class BoardWidget extends Pad {
         }
     }
 
-    /** Revise the displayed board according to BOARD. */
+    /** Revise the displayed board according to BOARD, redrawing and
+     *  repainting only the squares whose contents have changed. */
     synchronized void update(Board board) {
-        _board.copy(board);
-        repaint();
+        Graphics2D g = null;
+        for (Square s : Square.SQUARE_LIST) {
+            Piece piece = board.get(s);
+            if (piece != _pieces[s.index()]) {
+                _pieces[s.index()] = piece;
+                if (_image != null) {
+                    if (g == null) {
+                        g = _image.createGraphics();
+                    }
+                    redrawSquare(g, s);
+                }
+                repaint(cx(s), cy(s), SQUARE_SIDE + 1, SQUARE_SIDE + 1);
+            }
+        }
+        if (g != null) {
+            g.dispose();
+        }
     }
 
     /** Turn on move collection iff COLLECTING, and clear any current
@@ -142,10 +224,27 @@ class BoardWidget extends Pad {
         return cy(s.row());
     }
 
+    /** Gap between a piece and the edges of its square, in pixels. */
+    private static final int PIECE_INSET = 3;
+
+    /** The sprites of the pieces. */
+    private static final EnumMap<Piece, BufferedImage> SPRITES =
+        new EnumMap<>(Piece.class);
+
+    static {
+        for (Piece piece : new Piece[] { WHITE, BLACK, KING }) {
+            SPRITES.put(piece, sprite(piece));
+        }
+    }
+
     /** Queue on which to post move commands (from mouse clicks). */
     private ArrayBlockingQueue<String> _commands;
-    /** Board being displayed. */
-    private final Board _board = new Board();
+    /** Contents of each square as displayed, indexed by Square.index(),
+     *  or null for squares not yet displayed. */
+    private final Piece[] _pieces = new Piece[SIZE * SIZE];
+    /** The off-screen image of the board, or null until first
+     *  needed. */
+    private BufferedImage _image;
 
     /** True iff accepting moves from user. */
     private boolean _acceptingMoves;
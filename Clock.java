@@ -0,0 +1,131 @@
+package tablut;
+
+import java.util.function.LongSupplier;
+
+import static tablut.Piece.*;
+import static tablut.Utils.error;
+
+/** A pair of game clocks, one for each side, as for a timed game: each
+ *  side starts with the same time, its clock runs while it chooses a
+ *  move, and it gains a fixed increment for each move made.  A side whose
+ *  time runs out loses.  Times are in nanoseconds.
+ *  @author Vineet Vashist
+ */
+final class Clock {
+
+    /** Clocks giving each side BASE nanoseconds plus INCREMENT per
+     *  move. */
+    Clock(long base, long increment) {
+        this(base, increment, System::nanoTime);
+    }
+
+    /** Clocks giving each side BASE nanoseconds plus INCREMENT per move,
+     *  reading the time in nanoseconds from TIME. */
+    Clock(long base, long increment, LongSupplier time) {
+        if (base <= 0 || increment < 0) {
+            throw error("bad time control");
+        }
+        _base = base;
+        _increment = increment;
+        _time = time;
+        reset();
+    }
+
+    /** Return the time each side starts with. */
+    long base() {
+        return _base;
+    }
+
+    /** Return the time added for each move. */
+    long increment() {
+        return _increment;
+    }
+
+    /** Stop both clocks and give each side its starting time again. */
+    void reset() {
+        _whiteTime = _blackTime = _base;
+        _running = null;
+    }
+
+    /** Start the clock of SIDE (WHITE or BLACK), which must be the only
+     *  one running. */
+    void start(Piece side) {
+        if (_running != null && _running != side) {
+            throw error("both clocks running");
+        }
+        if (_running == null) {
+            _running = side;
+            _started = _time.getAsLong();
+        }
+    }
+
+    /** Stop the running clock, if any, after its side has moved, charging
+     *  it with the time elapsed and then, unless its time has run out,
+     *  adding the increment.  Returns false iff its time has run out. */
+    boolean press() {
+        if (_running == null) {
+            return true;
+        }
+        long left = remaining(_running);
+        boolean inTime = left >= 0;
+        if (inTime) {
+            left += _increment;
+        }
+        set(_running, left);
+        _running = null;
+        return inTime;
+    }
+
+    /** Return the side whose clock is running, or null if neither is. */
+    Piece running() {
+        return _running;
+    }
+
+    /** Return the time remaining to SIDE, counting the time elapsed if its
+     *  clock is running.  It is negative if the time has run out. */
+    long remaining(Piece side) {
+        long left = side == WHITE ? _whiteTime : _blackTime;
+        if (side == _running) {
+            left -= _time.getAsLong() - _started;
+        }
+        return left;
+    }
+
+    /** Set the remaining time of SIDE to TIME. */
+    private void set(Piece side, long time) {
+        if (side == WHITE) {
+            _whiteTime = time;
+        } else {
+            _blackTime = time;
+        }
+    }
+
+    /** Return TIME (in nanoseconds) as minutes, seconds, and tenths,
+     *  as in "4:05.3". */
+    static String format(long time) {
+        long tenths = Math.max(time, 0) / 100_000_000L;
+        return String.format("%d:%02d.%d", tenths / 600, tenths / 10 % 60,
+                             tenths % 10);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("White %s  Black %s",
+                             format(remaining(WHITE)),
+                             format(remaining(BLACK)));
+    }
+
+    /** Starting time of each side. */
+    private final long _base;
+    /** Time gained per move. */
+    private final long _increment;
+    /** Source of the time. */
+    private final LongSupplier _time;
+    /** Time remaining to each side, not counting the time elapsed on a
+     *  running clock. */
+    private long _whiteTime, _blackTime;
+    /** Side whose clock is running, or null. */
+    private Piece _running;
+    /** Time at which the running clock started. */
+    private long _started;
+}
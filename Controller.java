@@ -1,11 +1,21 @@
 package tablut;
 
-import java.io.PrintStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
 import java.util.Random;
-import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import static tablut.Utils.*;
 import static tablut.Square.*;
@@ -24,13 +34,12 @@ final class Controller {
      *  non-null, copies all commands to it. If STRICT, exits the
      *  program with non-zero code on receiving an erroneous move from a
      *  player. */
-    Controller(View view, PrintStream logFile, Reporter reporter,
+    Controller(View view, AsyncLog logFile, Reporter reporter,
                Player manualPlayerTemplate, Player autoPlayerTemplate,
                boolean strict) {
         _view = view;
         _playing = false;
         _logFile = logFile;
-        _input = new Scanner(System.in);
         _autoPlayerTemplate = autoPlayerTemplate;
         _manualPlayerTemplate = manualPlayerTemplate;
         _nonPlayer = manualPlayerTemplate.create(EMPTY, this);
@@ -45,33 +54,176 @@ final class Controller {
         _playing = true;
         _winner = null;
         _board.init();
+        _tree = new GameTree(_board);
+        startGame();
         while (_playing) {
             _view.update(this);
-            String command;
+            Player.Action action;
             if (_winner == null) {
-                if (_board.turn() == WHITE) {
-                    command = _white.myMove();
-                } else {
-                    command = _black.myMove();
+                Player mover = _board.turn() == WHITE ? _white : _black;
+                mover.clearStop();
+                _mover = mover;
+                if (_clock != null) {
+                    _clock.start(_board.turn());
                 }
-            } else {
-                command = _nonPlayer.myMove();
-                if (command == null) {
-                    command = "quit";
+                try {
+                    if (_mover.isManual() || !_nonPlayer.pollsCommands()) {
+                        action = _mover.myAction();
+                    } else {
+                        action = searchInBackground(_mover);
+                    }
+                } finally {
+                    _mover = null;
                 }
+            } else {
+                action = _nonPlayer.myAction();
+            }
+            if (action == null) {
+                action = Player.Action.command("quit");
             }
             try {
-                executeCommand(command);
+                execute(action);
 
             } catch (IllegalArgumentException excp) {
                 reportError("Error: %s%n", excp.getMessage());
                 if (_strict) {
-                    System.exit(1);
+                    exitOnError();
+                }
+            }
+        }
+        endGame();
+        closeLog();
+    }
+
+    /** Play the script of commands on INPUT, one per line, without
+     *  consulting the players, until the end of INPUT or a "quit"
+     *  command.  Moves are made by whichever side is to move and are
+     *  parsed directly from the characters of each line; other commands
+     *  are dispatched on their first word.  This avoids the regular
+     *  expressions used by play, so that long scripts of moves can be
+     *  replayed quickly. */
+    void playBatch(BufferedReader input) throws IOException {
+        _playing = true;
+        _winner = null;
+        _board.init();
+        _tree = new GameTree(_board);
+        startGame();
+        int lineNum = 0;
+        for (String line = input.readLine(); _playing && line != null;
+             line = input.readLine()) {
+            lineNum += 1;
+            if (_logFile != null) {
+                _logFile.println(line);
+            }
+            try {
+                executeBatchCommand(line);
+            } catch (IllegalArgumentException excp) {
+                reportError("Error: line %d: %s%n", lineNum,
+                            excp.getMessage());
+                if (_strict) {
+                    exitOnError();
                 }
             }
         }
+        endGame();
+        closeLog();
+    }
+
+    /** Return the action of ENGINE, an automated player, choosing it on
+     *  a worker thread while taking commands (such as from a menu) from
+     *  _nonPlayer.  A command stops the search, even one given before the
+     *  worker has started it: "stop" makes the best move found so far the
+     *  action, and any other command replaces the move. */
+    private Player.Action searchInBackground(Player engine) {
+        if (_searcher == null) {
+            _searcher = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tablut-search");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        Future<Player.Action> search = _searcher.submit(engine::myAction);
+        String command = null;
+        Player.Action action;
+        try {
+            while (true) {
+                try {
+                    action = search.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException excp) {
+                    if (command == null) {
+                        command = _nonPlayer.pollCommand(0);
+                        if (command != null) {
+                            engine.stop();
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException excp) {
+            engine.stop();
+            Thread.currentThread().interrupt();
+            return Player.Action.command("quit");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new IllegalStateException(excp.getCause());
+        }
+        if (command == null || command.trim().equalsIgnoreCase("stop")) {
+            return action;
+        }
+        return Player.Action.command(command);
+    }
+
+    /** Exit the program with a non-zero code, after writing out the
+     *  log, whose writer would otherwise die with the program. */
+    private void exitOnError() {
+        closeLog();
+        System.exit(1);
+    }
+
+    /** Start timing a game for the Flight Recorder. */
+    private void startGame() {
+        _game = new Events.Game();
+        _game.begin();
+    }
+
+    /** Finish timing the current game, if any, for the Flight Recorder,
+     *  recording its length and winner. */
+    private void endGame() {
+        if (_game == null) {
+            return;
+        }
+        _game.end();
+        if (_game.shouldCommit()) {
+            _game.moves = _board.moveCount();
+            _game.winner = _winner == null ? null : _winner.toName();
+            _game.commit();
+        }
+        _game = null;
+    }
+
+    /** Write out and close the log, if any. */
+    private void closeLog() {
         if (_logFile != null) {
-            _logFile.close();
+            try {
+                _logFile.close();
+            } catch (IOException excp) {
+                reportError("Error: could not write log: %s",
+                            excp.getMessage());
+            }
+        }
+    }
+
+    /** Write out everything logged so far. */
+    private void flushLog() {
+        if (_logFile != null) {
+            try {
+                _logFile.flush();
+            } catch (IOException excp) {
+                reportError("Error: could not write log: %s",
+                            excp.getMessage());
+            }
         }
     }
 
@@ -104,11 +256,91 @@ final class Controller {
             System.out.print("> ");
             System.out.flush();
         }
-        if (_input.hasNextLine()) {
-            return _input.nextLine().trim();
-        } else {
+        LinkedBlockingDeque<String> lines = input();
+        String line;
+        try {
+            line = lines.take();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
             return null;
         }
+        if (line == END_OF_INPUT) {
+            lines.addFirst(line);
+            return null;
+        }
+        return line.trim();
+    }
+
+    /** Return the next line of input, trimmed as for readLine, if it
+     *  arrives within MILLIS milliseconds and ACCEPT accepts it, taking it
+     *  from the input.  Otherwise, return null and leave the line, if any,
+     *  to be read later. */
+    String pollLine(long millis, Predicate<String> accept) {
+        LinkedBlockingDeque<String> lines = input();
+        String line;
+        try {
+            line = lines.poll(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (line == null) {
+            return null;
+        } else if (line != END_OF_INPUT && accept.test(line.trim())) {
+            return line.trim();
+        }
+        lines.addFirst(line);
+        return null;
+    }
+
+    /** Return _lines, first starting a thread that reads the standard
+     *  input into it, so that the input may be checked for commands while
+     *  an engine searches (see pollLine). */
+    private synchronized LinkedBlockingDeque<String> input() {
+        if (_lines == null) {
+            LinkedBlockingDeque<String> lines = new LinkedBlockingDeque<>();
+            Thread reader = new Thread(() -> {
+                BufferedReader in =
+                    new BufferedReader(new InputStreamReader(System.in));
+                try {
+                    for (String line = in.readLine(); line != null;
+                         line = in.readLine()) {
+                        lines.add(line);
+                    }
+                } catch (IOException excp) {
+                    reportError("Error: could not read input: %s%n",
+                                excp.getMessage());
+                }
+                lines.add(END_OF_INPUT);
+            }, "tablut-input");
+            reader.setDaemon(true);
+            reader.start();
+            _lines = lines;
+        }
+        return _lines;
+    }
+
+    /** Return the number of players' commands I have executed as text
+     *  (see executeCommand), which include moves given as text but not
+     *  those given as Moves. */
+    int commandsExecuted() {
+        return _commandsExecuted;
+    }
+
+    /** Return the clocks of the current game, or null if it is not
+     *  timed. */
+    Clock clock() {
+        return _clock;
+    }
+
+    /** Stop the search of the engine choosing a move, if any, so that it
+     *  makes the best move it has found so far.  May be called from any
+     *  thread. */
+    void stop() {
+        Player mover = _mover;
+        if (mover != null) {
+            mover.stop();
+        }
     }
 
     /** Return true iff white is a manual player. */
@@ -131,6 +363,12 @@ final class Controller {
         _reporter.reportNote(format, args);
     }
 
+    /** Report PROGRESS, the progress of an engine choosing a move, to my
+     *  view.  May be called from any thread. */
+    void reportProgress(AI.Progress progress) {
+        _view.progress(this, progress);
+    }
+
     /** Report move by calling reportMove(MOVE) on my reporter. */
     void reportMove(Move move) {
         _reporter.reportMove(move);
@@ -140,8 +378,7 @@ final class Controller {
      *  as for String.format. */
     void logComment(String format, Object... args) {
         if (_logFile != null) {
-            _logFile.printf("# " + format + "%n", args);
-            _logFile.flush();
+            _logFile.printf("# " + format, args);
         }
     }
 
@@ -168,25 +405,49 @@ final class Controller {
     private Command[] _commands = {
         new Command("quit$", this::doQuit),
         new Command("new$", this::doNew),
+        new Command("stop$", this::doStop),
         new Command("seed\\s+(\\d+)$", this::doSeed),
         new Command("dump$", this::doDump),
         new Command("undo$", this::doUndo),
+        new Command("variations$", this::doVariations),
+        new Command("goto\\s+(\\d+)$", this::doGoto),
         new Command("manual\\s+(white|black)$", this::doManual),
         new Command("auto\\s+(white|black)$", this::doAuto),
         new Command("limit\\s+(\\d+)$", this::doLimit),
+        new Command("clock(?:\\s+(\\d+)\\s+(\\d+))?$", this::doClock),
+        new Command("analyze\\s+(\\d+)$", this::doAnalyze),
         new Command("toggle\\s+" + SQ + "$", this::doToggle),
+        new Command("position(?:\\s+(.*))?$", this::doPosition),
         new Command(Move.MOVE_PATTERN.pattern(), this::doMove)
     };
 
     /** A Matcher whose Pattern matches comments. */
     private static final Matcher COMMENT = Pattern.compile("#.*").matcher("");
 
+    /** Perform ACTION, a player's move or command.  Moves are made
+     *  directly (players return only legal moves), and are converted to
+     *  text only for the log, if any. */
+    private void execute(Player.Action action) {
+        Move move = action.move();
+        if (move == null) {
+            executeCommand(action.command());
+        } else {
+            if (_logFile != null) {
+                _logFile.println(move.toString());
+            }
+            makeMove(move);
+        }
+        if (_clock != null && _board.turn() != _clock.running()) {
+            pressClock();
+        }
+    }
+
     /** Check that CMND is one of the valid Tablut commands and execute it, if
      *  so, raising an IllegalArgumentException otherwise. */
     private void executeCommand(String cmnd) {
+        _commandsExecuted += 1;
         if (_logFile != null) {
             _logFile.println(cmnd);
-            _logFile.flush();
         }
 
         COMMENT.reset(cmnd);
@@ -205,15 +466,159 @@ final class Controller {
         throw error("Bad command: %s", cmnd);
     }
 
+    /** Check that LINE is one of the valid Tablut commands and execute
+     *  it, if so, raising an IllegalArgumentException otherwise.  Unlike
+     *  executeCommand, uses no regular expressions, does not log, and
+     *  checks that moves are legal. */
+    private void executeBatchCommand(String line) {
+        int start, end;
+        end = line.indexOf('#');
+        if (end < 0) {
+            end = line.length();
+        }
+        for (start = 0; start < end && isSpace(line.charAt(start));
+             start += 1) {
+            continue;
+        }
+        while (end > start && isSpace(line.charAt(end - 1))) {
+            end -= 1;
+        }
+        if (start == end) {
+            return;
+        }
+        if (Move.isGrammaticalMove(line, start, end)) {
+            checkedMove(Move.mv(line, start, end));
+            return;
+        }
+
+        String cmnd = line.substring(start, end).toLowerCase();
+        if (Move.isGrammaticalMove(cmnd)) {
+            checkedMove(Move.mv(cmnd));
+            return;
+        }
+        int split;
+        for (split = 0; split < cmnd.length()
+                 && !isSpace(cmnd.charAt(split)); split += 1) {
+            continue;
+        }
+        String arg = cmnd.substring(split).trim();
+        switch (cmnd.substring(0, split)) {
+        case "quit":
+            noArgument(cmnd, arg);
+            doQuit(null);
+            break;
+        case "new":
+            noArgument(cmnd, arg);
+            doNew(null);
+            break;
+        case "stop":
+            noArgument(cmnd, arg);
+            doStop(null);
+            break;
+        case "dump":
+            noArgument(cmnd, arg);
+            doDump(null);
+            break;
+        case "undo":
+            noArgument(cmnd, arg);
+            doUndo(null);
+            break;
+        case "variations":
+            noArgument(cmnd, arg);
+            doVariations(null);
+            break;
+        case "goto":
+            jump(number(cmnd, arg));
+            break;
+        case "seed":
+            seed(number(cmnd, arg));
+            break;
+        case "limit":
+            limit(number(cmnd, arg));
+            break;
+        case "clock":
+            if (arg.isEmpty()) {
+                clock(null, null);
+            } else {
+                int gap;
+                for (gap = 0; gap < arg.length()
+                         && !isSpace(arg.charAt(gap)); gap += 1) {
+                    continue;
+                }
+                clock(number(cmnd, arg.substring(0, gap)),
+                      number(cmnd, arg.substring(gap).trim()));
+            }
+            break;
+        case "analyze":
+            analyze(number(cmnd, arg));
+            break;
+        case "manual":
+            manual(arg);
+            break;
+        case "auto":
+            auto(arg);
+            break;
+        case "position":
+            position(arg.isEmpty() ? null : arg);
+            break;
+        case "toggle":
+            if (arg.length() != 2) {
+                throw error("Bad command: %s", cmnd);
+            }
+            toggle(sq(arg.charAt(0) - 'a', arg.charAt(1) - '1'));
+            break;
+        default:
+            throw error("Bad command: %s", cmnd);
+        }
+    }
+
+    /** Return true iff C is a space or control character, as for
+     *  String.trim. */
+    private static boolean isSpace(char c) {
+        return c <= ' ';
+    }
+
+    /** Check that ARG, the operand of CMND, is empty. */
+    private static void noArgument(String cmnd, String arg) {
+        if (!arg.isEmpty()) {
+            throw error("Bad command: %s", cmnd);
+        }
+    }
+
+    /** Check that ARG, the operand of CMND, is an unsigned decimal
+     *  numeral, and return it. */
+    private static String number(String cmnd, String arg) {
+        if (arg.isEmpty()) {
+            throw error("Bad command: %s", cmnd);
+        }
+        for (int i = 0; i < arg.length(); i += 1) {
+            if (arg.charAt(i) < '0' || arg.charAt(i) > '9') {
+                throw error("Bad command: %s", cmnd);
+            }
+        }
+        return arg;
+    }
+
     /** Command "new". */
     private void doNew(Matcher unused) {
+        endGame();
+        if (_clock != null) {
+            _clock.reset();
+        }
         _board.init();
+        _tree = new GameTree(_board);
+        startGame();
         _winner = null;
     }
 
     /** Command "manual <color>", where <color> is COLOR.group(1). */
     private void doManual(Matcher color) {
-        switch (color.group(1)) {
+        manual(color.group(1));
+    }
+
+    /** Make the player of COLOR ("white" or "black") manual. */
+    private void manual(String color) {
+        switch (color) {
         case "black":
             _black = _manualPlayerTemplate.create(BLACK, this);
             break;
@@ -221,14 +626,19 @@ final class Controller {
             _white = _manualPlayerTemplate.create(WHITE, this);
             break;
         default:
-            assert false;
+            throw error("bad color: %s", color);
         }
         _view.update(this);
     }
 
     /** Command "auto <color>", where <color> is COLOR.group(1). */
     private void doAuto(Matcher color) {
-        switch (color.group(1)) {
+        auto(color.group(1));
+    }
+
+    /** Make the player of COLOR ("white" or "black") automated. */
+    private void auto(String color) {
+        switch (color) {
         case "black":
             _black = _autoPlayerTemplate.create(BLACK, this);
             break;
@@ -236,7 +646,7 @@ final class Controller {
             _white = _autoPlayerTemplate.create(WHITE, this);
             break;
         default:
-            assert false;
+            throw error("bad color: %s", color);
         }
         _view.update(this);
     }
@@ -245,7 +655,11 @@ final class Controller {
      *  The contents of the square are modified:
      *  EMPTY -> WHITE -> KING -> BLACK .< ENPTY". Clear Undo information. */
     private void doToggle(Matcher mat) {
-        Square sq = sq(mat.group(1));
+        toggle(sq(mat.group(1)));
+    }
+
+    /** Change the contents of SQ as for the "toggle" command. */
+    private void toggle(Square sq) {
         Piece piece;
         switch (_board.get(sq)) {
         case EMPTY: piece = WHITE; break;
@@ -256,17 +670,51 @@ final class Controller {
         }
         _board.put(piece, sq);
         _board.clearUndo();
+        _tree = new GameTree(_board);
+    }
+
+    /** Command "position [<position>]", where <position>, the first group
+     *  of MAT, is in the notation of Notation. */
+    private void doPosition(Matcher mat) {
+        position(mat.group(1));
+    }
+
+    /** Set the board to POSITION, in the notation of Notation, or report
+     *  the current position in that notation if POSITION is null. */
+    private void position(String position) {
+        if (position == null) {
+            reportNote("%s", Notation.format(_board));
+        } else {
+            _notation.parse(position, _board);
+            _tree = new GameTree(_board);
+            _winner = _board.winner();
+            _view.update(this);
+        }
     }
 
     /** Command "quit". */
     private void doQuit(Matcher unused) {
         _playing = false;
+        flushLog();
+    }
+
+    /** Command "stop": stop the engine's search, if one is in progress.
+     *  A "stop" given while an engine searches in the background is
+     *  normally taken by searchInBackground instead; this serves when
+     *  the command comes from some other thread. */
+    private void doStop(Matcher unused) {
+        stop();
     }
 
     /** Command "seed N" where N is the first group of MAT. */
     private void doSeed(Matcher mat) {
+        seed(mat.group(1));
+    }
+
+    /** Re-seed the random number generator with the numeral N. */
+    private void seed(String n) {
         try {
-            setSeed(Long.parseLong(mat.group(1)));
+            setSeed(Long.parseLong(n));
         } catch (NumberFormatException excp) {
             throw error("number too large");
         }
@@ -274,50 +722,219 @@ final class Controller {
 
     /** Command "limit N" where N is the first captured group of MAT. */
     private void doLimit(Matcher mat) {
+        limit(mat.group(1));
+    }
+
+    /** Set the move limit to the numeral N. */
+    private void limit(String n) {
         try {
-            _board.setMoveLimit(Integer.parseInt(mat.group(1)));
+            _board.setMoveLimit(Integer.parseInt(n));
         } catch (NumberFormatException excp) {
             throw error("number too large");
         }
     }
 
+    /** Command "clock [BASE INCREMENT]", where BASE and INCREMENT are
+     *  the groups of MAT. */
+    private void doClock(Matcher mat) {
+        clock(mat.group(1), mat.group(2));
+    }
+
+    /** Time the game from now on, giving each side BASE seconds plus
+     *  INCREMENT per move (numerals), or stop timing it if BASE is 0.  If
+     *  BASE is null, report the times remaining. */
+    private void clock(String base, String increment) {
+        if (base == null) {
+            if (_clock == null) {
+                reportNote("No clock.");
+            } else {
+                reportNote("%s", _clock);
+            }
+            return;
+        }
+        long seconds, bonus;
+        try {
+            seconds = Long.parseLong(base);
+            bonus = Long.parseLong(increment);
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+        if (seconds > MAX_CLOCK || bonus > MAX_CLOCK) {
+            throw error("number too large");
+        }
+        _clock = seconds == 0 ? null
+            : new Clock(seconds * NANOS_PER_SECOND,
+                        bonus * NANOS_PER_SECOND);
+    }
+
+    /** Stop the running clock after a move, reporting a loss on time if
+     *  the side that moved ran out of time. */
+    private void pressClock() {
+        if (_clock == null || _clock.running() == null) {
+            return;
+        }
+        Piece side = _clock.running();
+        if (!_clock.press() && _winner == null) {
+            _winner = side.opponent();
+            endGame();
+            flushLog();
+            _view.update(this);
+            _reporter.reportNote("%s wins on time.", _winner.toName());
+        }
+    }
+
     /** Execute a move command matched in MAT. */
     private void doMove(Matcher mat) {
-        _board.makeMove(Move.mv(mat.group(0)));
+        makeMove(Move.mv(mat.group(0)));
+    }
+
+    /** Make MOVE, after checking that it is legal. */
+    private void checkedMove(Move move) {
+        if (_winner != null) {
+            throw error("misplaced move");
+        }
+        if (move == null || !_board.isLegal(move)) {
+            throw error("illegal move");
+        }
+        makeMove(move);
+    }
+
+    /** Make MOVE, record it in the game tree, and check for a win. */
+    private void makeMove(Move move) {
+        int moveCount = _board.moveCount();
+        _board.makeMove(move);
+        if (_board.moveCount() > moveCount) {
+            _tree.play(move);
+        }
         if (_winner == null) {
             _winner = _board.winner();
             if (_winner != null) {
+                endGame();
+                flushLog();
                 _view.update(this);
                 _reporter.reportNote("%s wins.", _winner.toName());
             }
         }
     }
 
+    /** Command "analyze N", where N is the first group of MAT: report the
+     *  best N moves for the side to move, with their scores and principal
+     *  variations. */
+    private void doAnalyze(Matcher mat) {
+        analyze(mat.group(1));
+    }
+
+    /** Report the best N moves for the side to move, where N is a
+     *  numeral. */
+    private void analyze(String n) {
+        if (_winner != null) {
+            throw error("game is over");
+        }
+        int count;
+        try {
+            count = Integer.parseInt(n);
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+        AI engine = new AI(_board.turn(), this);
+        int rank = 1;
+        for (AI.Variation line : engine.analyze(_board, count)) {
+            reportNote("%d. %s", rank, line);
+            rank += 1;
+        }
+    }
+
     /** Dump the contents of the board on standard output. */
     private void doDump(Matcher unused) {
         System.out.printf("===%n%s===%n", _board);
     }
 
     /** Undo back to before my last move, if there was one (otherwise does
-     *  nothing). */
+     *  nothing).  The moves undone remain in the game tree as a
+     *  variation. */
     private void doUndo(Matcher unused) {
-        if (_board.moveCount() > 1) {
-            _board.undo();
-            _board.undo();
-            _winner = null;
-            _view.update(this);
+        GameTree.Node current = _tree.current();
+        if (current.ply() > 1) {
+            jump(current.parent().parent());
+        }
+    }
+
+    /** Command "variations": report the moves played so far from the
+     *  current position, main line first. */
+    private void doVariations(Matcher unused) {
+        List<GameTree.Node> variations = _tree.current().variations();
+        if (variations.isEmpty()) {
+            reportNote("No variations.");
+        }
+        for (int i = 0; i < variations.size(); i += 1) {
+            reportNote("%d. %s%s", i + 1, variations.get(i).move(),
+                       i == 0 ? " (main line)" : "");
         }
     }
 
+    /** Command "goto N", where N is the first group of MAT. */
+    private void doGoto(Matcher mat) {
+        jump(mat.group(1));
+    }
+
+    /** Go to the position after N (a numeral) moves from the start of
+     *  the game tree, on the line through the current position (following
+     *  the main line beyond it). */
+    private void jump(String n) {
+        try {
+            jump(_tree.atPly(Integer.parseInt(n)));
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+    }
+
+    /** Go to the position at NODE of the game tree. */
+    private void jump(GameTree.Node node) {
+        _tree.jump(node, _board);
+        _winner = _board.winner();
+        _view.update(this);
+    }
+
     /** The board. */
     private Board _board = new Board();
 
+    /** The moves and variations played from the start of the game or
+     *  the last change to the position by other means. */
+    private GameTree _tree = new GameTree(_board);
+
+    /** Parser for the "position" command. */
+    private final Notation _notation = new Notation();
+
+    /** The Flight Recorder event timing the current game, or null if it
+     *  has been recorded. */
+    private Events.Game _game;
+
     /** The winning side of the current game. */
     private Piece _winner;
 
     /** True while game is still active. */
     private boolean _playing;
 
+    /** The clocks of the current game, or null if it is not timed. */
+    private Clock _clock;
+
+    /** Largest time, in seconds, accepted by the "clock" command. */
+    private static final long MAX_CLOCK = 1_000_000_000L;
+
+    /** Number of nanoseconds in a second. */
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /** Runs the searches of engines while commands are taken (see
+     *  searchInBackground), or null until needed. */
+    private ExecutorService _searcher;
+
+    /** Milliseconds between checks for commands while a search runs in
+     *  searchInBackground. */
+    private static final long POLL_INTERVAL = 20;
+
+    /** The player choosing a move, or null if none is. */
+    private volatile Player _mover;
+
     /** The object that is displaying the current game. */
     private View _view;
 
@@ -325,10 +942,18 @@ final class Controller {
     private Random _randGen = new Random();
 
     /** Log file, or null if absent. */
-    private PrintStream _logFile;
+    private AsyncLog _logFile;
+
+    /** Number of calls of executeCommand. */
+    private int _commandsExecuted;
+
+    /** Lines of the standard input read so far and not yet taken, ending
+     *  with END_OF_INPUT once it is all read, or null until input is
+     *  first needed (see input). */
+    private LinkedBlockingDeque<String> _lines;
 
-    /** Input source. */
-    private Scanner _input;
+    /** Marks the end of the standard input in _lines. */
+    private static final String END_OF_INPUT = new String("end of input");
 
     /** The current White and Black players, each created from
      *  _autoPlayerTemplate or _manualPlayerTemplate. */
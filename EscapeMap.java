@@ -0,0 +1,183 @@
+package tablut;
+
+import java.util.Arrays;
+
+import static tablut.Piece.*;
+import static tablut.Square.*;
+
+/** The distances, in king moves, from the king to every square of a
+ *  board, given the pieces that block him.  The distances are found by a
+ *  breadth-first flood fill over the 81 squares held as bit sets in pairs
+ *  of longs (bit i of the pair being the square with index i), so that
+ *  each step of the search slides all frontier squares at once.  An
+ *  EscapeMap may be reused for any number of boards, and recomputing it
+ *  allocates nothing.
+ *  @author Vineet Vashist
+ */
+final class EscapeMap {
+
+    /** The value of distance for squares the king cannot reach. */
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /** Recompute my distances for the position in BOARD. Returns this. */
+    EscapeMap compute(Board board) {
+        Arrays.fill(_dist, (byte) -1);
+        Arrays.fill(_edges, 0);
+        _escapeDistance = UNREACHABLE;
+
+        long emptyLo = 0, emptyHi = 0, fLo = 0, fHi = 0;
+        for (Square s : SQUARE_LIST) {
+            Piece p = board.get(s);
+            int i = s.index();
+            if (p == EMPTY) {
+                if (i < 64) {
+                    emptyLo |= 1L << i;
+                } else {
+                    emptyHi |= 1L << (i - 64);
+                }
+            } else if (p == KING) {
+                _dist[i] = 0;
+                if (i < 64) {
+                    fLo = 1L << i;
+                } else {
+                    fHi = 1L << (i - 64);
+                }
+            }
+        }
+
+        if (((fLo & EDGE_LO) | (fHi & EDGE_HI)) != 0) {
+            _edges[0] = 1;
+            _escapeDistance = 0;
+        }
+
+        long reachedLo = fLo, reachedHi = fHi;
+        for (int d = 1; (fLo | fHi) != 0; d += 1) {
+            long nextLo = 0, nextHi = 0;
+            for (int dir = 0; dir < 4; dir += 1) {
+                long lo = fLo, hi = fHi;
+                while (true) {
+                    long lo1, hi1;
+                    switch (dir) {
+                    case 0:
+                        lo1 = lo << SIZE;
+                        hi1 = (hi << SIZE) | (lo >>> (64 - SIZE));
+                        break;
+                    case 1:
+                        lo1 = (lo << 1) & ~COL0_LO;
+                        hi1 = ((hi << 1) | (lo >>> 63)) & ~COL0_HI;
+                        break;
+                    case 2:
+                        lo1 = (lo >>> SIZE) | (hi << (64 - SIZE));
+                        hi1 = hi >>> SIZE;
+                        break;
+                    default:
+                        lo1 = ((lo >>> 1) | (hi << 63)) & ~COLN_LO;
+                        hi1 = (hi >>> 1) & ~COLN_HI;
+                        break;
+                    }
+                    lo = lo1 & emptyLo;
+                    hi = hi1 & emptyHi;
+                    if ((lo | hi) == 0) {
+                        break;
+                    }
+                    nextLo |= lo;
+                    nextHi |= hi;
+                }
+            }
+            fLo = nextLo & ~reachedLo;
+            fHi = nextHi & ~reachedHi;
+            reachedLo |= fLo;
+            reachedHi |= fHi;
+
+            int edges = Long.bitCount(fLo & EDGE_LO)
+                + Long.bitCount(fHi & EDGE_HI);
+            _edges[d] = edges;
+            if (edges > 0 && _escapeDistance == UNREACHABLE) {
+                _escapeDistance = d;
+            }
+            for (long bits = fLo; bits != 0; bits &= bits - 1) {
+                _dist[Long.numberOfTrailingZeros(bits)] = (byte) d;
+            }
+            for (long bits = fHi; bits != 0; bits &= bits - 1) {
+                _dist[64 + Long.numberOfTrailingZeros(bits)] = (byte) d;
+            }
+        }
+        return this;
+    }
+
+    /** Return the least number of moves in which the king could reach S
+     *  if the other pieces stood still, or UNREACHABLE. */
+    int distance(Square s) {
+        int d = _dist[s.index()];
+        return d < 0 ? UNREACHABLE : d;
+    }
+
+    /** Return the least number of moves in which the king could reach an
+     *  edge square if the other pieces stood still, or UNREACHABLE. */
+    int escapeDistance() {
+        return _escapeDistance;
+    }
+
+    /** Return the number of edge squares that the king can reach in
+     *  exactly MOVES moves (and no fewer). */
+    int escapes(int moves) {
+        return moves < 0 || moves >= _edges.length ? 0 : _edges[moves];
+    }
+
+    /** Return the number of edge squares the king can reach in one
+     *  move. */
+    int oneMoveEscapes() {
+        return _edges[1];
+    }
+
+    /** Return the number of edge squares the king can reach in two
+     *  moves, but not one. */
+    int twoMoveEscapes() {
+        return _edges[2];
+    }
+
+    /** Number of squares on a side of the board. */
+    private static final int SIZE = Board.SIZE;
+
+    /** Bit sets (low and high words) of the squares in the leftmost and
+     *  rightmost columns and on the edge of the board. */
+    private static final long COL0_LO, COL0_HI, COLN_LO, COLN_HI,
+        EDGE_LO, EDGE_HI;
+
+    static {
+        long col0Lo = 0, col0Hi = 0, colNLo = 0, colNHi = 0,
+            edgeLo = 0, edgeHi = 0;
+        for (Square s : SQUARE_LIST) {
+            int i = s.index();
+            long lo = i < 64 ? 1L << i : 0,
+                hi = i < 64 ? 0 : 1L << (i - 64);
+            if (s.col() == 0) {
+                col0Lo |= lo;
+                col0Hi |= hi;
+            }
+            if (s.col() == SIZE - 1) {
+                colNLo |= lo;
+                colNHi |= hi;
+            }
+            if (s.isEdge()) {
+                edgeLo |= lo;
+                edgeHi |= hi;
+            }
+        }
+        COL0_LO = col0Lo;
+        COL0_HI = col0Hi;
+        COLN_LO = colNLo;
+        COLN_HI = colNHi;
+        EDGE_LO = edgeLo;
+        EDGE_HI = edgeHi;
+    }
+
+    /** Distance to each square by index, or -1 if unreachable. */
+    private final byte[] _dist = new byte[NUM_SQUARES];
+
+    /** _edges[d] is the number of edge squares at distance d. */
+    private final int[] _edges = new int[NUM_SQUARES + 1];
+
+    /** The least distance to an edge square. */
+    private int _escapeDistance;
+}
@@ -0,0 +1,76 @@
+package tablut;
+
+/** The arithmetic at the heart of evaluating many positions at once:
+ *  weighted sums of per-position features, and the clipped dot products
+ *  of a Network's output layer.  SCALAR does it one value at a time.
+ *  BEST is VectorKernel, which uses the SIMD instructions of the
+ *  jdk.incubator.vector module, when that class has been compiled (see
+ *  "make vector") and the module is present (java --add-modules
+ *  jdk.incubator.vector), and otherwise SCALAR.  All kernels compute with
+ *  Java's int and long arithmetic, so they give exactly the same results.
+ *  @author Vineet Vashist
+ */
+interface EvalKernel {
+
+    /** Set SCORES[i] to the sum over k of WEIGHTS[k] * FEATURES[k][i],
+     *  for 0 <= i < COUNT, with int arithmetic. */
+    void combine(int[][] features, int[] weights, int count, int[] scores);
+
+    /** Return the sum over 0 <= i < LENGTH of WEIGHTS[i] times VALUES[i]
+     *  clipped to the range [0, CLIP], where 0 <= CLIP <= 255. */
+    long clippedDot(short[] values, short[] weights, int clip, int length);
+
+    /** A kernel that works one value at a time. */
+    EvalKernel SCALAR = new EvalKernel() {
+        @Override
+        public void combine(int[][] features, int[] weights, int count,
+                            int[] scores) {
+            for (int i = 0; i < count; i += 1) {
+                int sum = 0;
+                for (int k = 0; k < weights.length; k += 1) {
+                    sum += weights[k] * features[k][i];
+                }
+                scores[i] = sum;
+            }
+        }
+
+        @Override
+        public long clippedDot(short[] values, short[] weights, int clip,
+                               int length) {
+            long sum = 0;
+            for (int i = 0; i < length; i += 1) {
+                int v = Math.min(Math.max(values[i], 0), clip);
+                sum += v * weights[i];
+            }
+            return sum;
+        }
+    };
+
+    /** The fastest kernel available. */
+    EvalKernel BEST = Kernels.best();
+
+    /** Selection of BEST. */
+    final class Kernels {
+        /** Not instantiable. */
+        private Kernels() {
+        }
+
+        /** Return a VectorKernel if one can be loaded, and otherwise
+         *  SCALAR. */
+        static EvalKernel best() {
+            if (Boolean.getBoolean("tablut.scalar")
+                || ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+                return SCALAR;
+            }
+            try {
+                return (EvalKernel) Class.forName("tablut.VectorKernel")
+                    .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError excp) {
+                return SCALAR;
+            }
+        }
+
+        /** Name of the module providing the Vector API. */
+        private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    }
+}
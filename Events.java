@@ -0,0 +1,150 @@
+package tablut;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/** The JDK Flight Recorder events that the program emits, so that
+ *  recordings show its searches and games alongside the JVM's own events
+ *  (garbage collection, CPU load, lock contention, ...).  All are
+ *  disabled by default, and cost next to nothing unless a recording
+ *  enables them, as in
+ *  <pre>
+ *      java -XX:StartFlightRecording:filename=tablut.jfr,\
+ *           +tablut.Search#enabled=true,+tablut.Game#enabled=true ...
+ *  </pre>
+ *  (JDK 17 and later), or with a settings file made by, e.g.,
+ *  "jfr configure +tablut.Search#enabled=true --output tablut.jfc".
+ *  Each event times the activity it describes.
+ *  @author Vineet Vashist
+ */
+final class Events {
+
+    /** Not instantiable. */
+    private Events() {
+    }
+
+    /** A search for the best move or moves from a position. */
+    @Name("tablut.Search")
+    @Label("Search")
+    @Category({ "Tablut", "Search" })
+    @Description("A search for the best move or moves from a position")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Search extends Event {
+        /** Number of levels searched. */
+        @Label("Depth")
+        int depth;
+
+        /** Number of best moves requested. */
+        @Label("Lines")
+        int lines;
+
+        /** Number of positions searched. */
+        @Label("Nodes")
+        long nodes;
+
+        /** Score of the best move found, favoring white. */
+        @Label("Score")
+        int score;
+
+        /** Best move found, if any. */
+        @Label("Move")
+        String move;
+    }
+
+    /** One completed search of several made for one move or analysis:
+     *  a search to one depth when the engine deepens its search under a
+     *  time limit, or, in an analysis of several lines, the search that
+     *  finds the best move not found by the earlier ones. */
+    @Name("tablut.Iteration")
+    @Label("Search Iteration")
+    @Category({ "Tablut", "Search" })
+    @Description("A search to one depth, or for one line of an analysis")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Iteration extends Event {
+        /** Depth searched (as for tablut.Search). */
+        @Label("Depth")
+        int depth;
+
+        /** Rank of the line found (1 for the best). */
+        @Label("Rank")
+        int rank;
+
+        /** Positions searched by the search or analysis so far. */
+        @Label("Nodes")
+        long nodes;
+
+        /** Score of the line, favoring white. */
+        @Label("Score")
+        int score;
+
+        /** First move of the line, or null if there was none. */
+        @Label("Move")
+        String move;
+
+        /** Number of entries in the table of positions searched. */
+        @Label("Table Entries")
+        int tableEntries;
+    }
+
+    /** A growth of the table of positions searched during an analysis,
+     *  as its entries are moved to a table of twice the capacity. */
+    @Name("tablut.TableResize")
+    @Label("Table Resize")
+    @Category({ "Tablut", "Search" })
+    @Description("Growth of the table of positions searched")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class TableResize extends Event {
+        /** Number of entries in the table. */
+        @Label("Entries")
+        int entries;
+
+        /** Number of buckets in the table after growing. */
+        @Label("Capacity")
+        int capacity;
+    }
+
+    /** A game played under a Controller, from its start to its win or
+     *  abandonment. */
+    @Name("tablut.Game")
+    @Label("Game")
+    @Category({ "Tablut", "Game" })
+    @Description("A game from its start to its end")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Game extends Event {
+        /** Number of moves made. */
+        @Label("Moves")
+        int moves;
+
+        /** Winning side, or null if the game was abandoned. */
+        @Label("Winner")
+        String winner;
+    }
+
+    /** A generation of the legal moves of a position that took longer than
+     *  the event's threshold (by default, 1 ms). */
+    @Name("tablut.MoveGeneration")
+    @Label("Slow Move Generation")
+    @Category({ "Tablut", "Search" })
+    @Description("Generation of legal moves that took unusually long")
+    @Enabled(false)
+    @Threshold("1 ms")
+    static final class MoveGeneration extends Event {
+        /** Side whose moves were generated. */
+        @Label("Side")
+        String side;
+
+        /** Number of moves generated. */
+        @Label("Moves")
+        int moves;
+    }
+}
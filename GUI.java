@@ -7,6 +7,7 @@ import java.awt.Dimension;
 import javax.swing.JEditorPane;
 import javax.swing.JFrame;
 import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
 
 import java.io.InputStream;
 import java.io.IOException;
@@ -14,6 +15,7 @@ import java.io.StringWriter;
 
 
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /** The GUI controller for a Tablut board and buttons.
  *  @author Vineet
@@ -35,6 +37,7 @@ class GUI extends TopLevel implements View, Reporter {
     /** A new window with given TITLE providing a view of a Tablut board. */
     GUI(String title) {
         super(title, true);
+        addMenuButton("Game->Stop", this::stop);
         addMenuButton("Game->Quit", this::quit);
 
         _widget = new BoardWidget(_pendingCommands);
@@ -46,6 +49,10 @@ class GUI extends TopLevel implements View, Reporter {
                  new LayoutSpec("x", 0, "y", 0,
                                 "height", 1,
                                 "width", 3));
+        addLabel("", "Progress",
+                 new LayoutSpec("x", 0, "y", 2,
+                                "height", 1,
+                                "width", 3));
 
 
     }
@@ -55,39 +62,66 @@ class GUI extends TopLevel implements View, Reporter {
         _pendingCommands.offer("quit");
     }
 
+    /** Response to "Stop" button click. */
+    private void stop(String dummy) {
+        _pendingCommands.offer("stop");
+    }
+
 
     /** Return the next command from our widget, waiting for it as necessary.
      *  The BoardWidget uses _pendingCommands to queue up moves that it
      *  receives.  Thie class uses _pendingCommands to queue up commands that
-     *  are generated by clicking on menu items. */
+     *  are generated by clicking on menu items.  Returns null if
+     *  interrupted while waiting, leaving the thread interrupted. */
     String readCommand() {
         try {
             _widget.setMoveCollection(true);
-            String cmnd = _pendingCommands.take();
+            return _pendingCommands.take();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
             _widget.setMoveCollection(false);
-            return cmnd;
+        }
+    }
+
+    /** Return the next command from our menus, waiting up to MILLIS
+     *  milliseconds for it, or null if there is none.  Moves on the board
+     *  are not collected meanwhile.  Returns "stop" if interrupted while
+     *  waiting, leaving the thread interrupted. */
+    String pollCommand(long millis) {
+        try {
+            return _pendingCommands.poll(millis, TimeUnit.MILLISECONDS);
         } catch (InterruptedException excp) {
-            throw new Error("unexpected interrupt");
+            Thread.currentThread().interrupt();
+            return "stop";
         }
     }
 
+    @Override
+    public void progress(Controller controller, AI.Progress progress) {
+        String text = progress.toString();
+        SwingUtilities.invokeLater(() -> setLabel("Progress", text));
+    }
+
     @Override
     public void update(Controller controller) {
         Board board = controller.board();
-
         _widget.update(board);
+        String turn;
         if (board.winner() != null) {
-            setLabel("CurrentTurn",
-                     String.format("Winner: %s%s",
-                                   board.winner().toName(),
-                                   board.repeatedPosition()
-                                   ? " (repeated board)"
-                                   : ""));
+            turn = String.format("Winner: %s%s",
+                                 board.winner().toName(),
+                                 board.repeatedPosition()
+                                 ? " (repeated board)"
+                                 : "");
         } else {
-            setLabel("CurrentTurn",
-                     String.format("To move: %s", board.turn().toName()));
+            turn = String.format("To move: %s", board.turn().toName());
         }
-
+        SwingUtilities.invokeLater(() -> {
+            setLabel("Progress", "");
+            setLabel("CurrentTurn", turn);
+        });
     }
 
     /** Display text in resource named TEXTRESOURCE in a new window titled
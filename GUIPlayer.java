@@ -29,19 +29,40 @@ class GUIPlayer extends Player implements Reporter {
 
     @Override
     String myMove() {
+        Action action = myAction();
+        return action == null ? null : action.toString();
+    }
+
+    @Override
+    Action myAction() {
         while (true) {
             String command;
             command = _controller.readLine(false);
             if (command == null) {
                 command = _gui.readCommand();
+                if (command == null) {
+                    return null;
+                }
             }
             Move move = Move.mv(command);
-            if (move == null || board().isLegal(move)) {
-                return command;
+            if (move == null) {
+                return Action.command(command);
+            } else if (board().isLegal(move)) {
+                return Action.move(move);
             }
         }
     }
 
+    @Override
+    boolean pollsCommands() {
+        return true;
+    }
+
+    @Override
+    String pollCommand(long millis) {
+        return _gui.pollCommand(millis);
+    }
+
     @Override
     public void reportError(String fmt, Object... args) {
         _gui.reportError(fmt, args);
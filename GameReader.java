@@ -0,0 +1,172 @@
+package tablut;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static tablut.GameWriter.*;
+import static tablut.Piece.*;
+import static tablut.Square.*;
+
+/** A reader of games written by GameWriter, which decodes each move
+ *  against the position on a Board being replayed alongside it.
+ *  A typical loop is
+ *  <pre>
+ *      while (reader.nextGame(board)) {
+ *          for (Move m = reader.nextMove(board); m != null;
+ *               m = reader.nextMove(board)) {
+ *              board.makeMove(m);
+ *          }
+ *      }
+ *  </pre>
+ *  @author Vineet Vashist
+ */
+class GameReader implements Closeable {
+
+    /** A reader of games from IN.  Throws IOException if IN does not
+     *  start with a valid header. */
+    GameReader(InputStream in) throws IOException {
+        _in = new BufferedInputStream(in, 1 << 16);
+        byte[] magic = new byte[MAGIC.length];
+        for (int i = 0; i < magic.length; i += 1) {
+            magic[i] = (byte) readByte();
+        }
+        if (!Arrays.equals(magic, MAGIC) || readByte() != VERSION) {
+            throw new IOException("not a game file of a known version");
+        }
+    }
+
+    /** Start reading the next game, setting BOARD to its initial
+     *  position.  Returns false if there are no more games. */
+    boolean nextGame(Board board) throws IOException {
+        int flags = _in.read();
+        if (flags < 0) {
+            return false;
+        }
+        _flags = flags;
+        _winner = null;
+        board.init();
+        return true;
+    }
+
+    /** Return the next move of the current game, to be made from the
+     *  current position of BOARD, or null at the end of the game. */
+    Move nextMove(Board board) throws IOException {
+        int b0 = readByte();
+        Square from;
+        int low;
+        if (b0 < 0xF0) {
+            from = pieceOfRank(board, b0 >> 4);
+            low = b0 & 0xF;
+        } else {
+            int code = b0 << 8 | readByte();
+            if (code == END_OF_GAME) {
+                int winner = readByte();
+                if (winner >= Piece.values().length) {
+                    throw new IOException("bad game result");
+                }
+                _winner = Piece.values()[winner];
+                return null;
+            }
+            from = sq((code >> 4) & 0x7F);
+            low = code & 0xF;
+        }
+        int target = low & 7;
+        Square to;
+        if ((low & 8) == 0) {
+            to = sq(target < from.col() ? target : target + 1, from.row());
+        } else {
+            to = sq(from.col(), target < from.row() ? target : target + 1);
+        }
+        if ((_flags & HAS_SCORES) != 0) {
+            int v = readVarint();
+            _score = (v >>> 1) ^ -(v & 1);
+        }
+        if ((_flags & HAS_TIMES) != 0) {
+            _millis = readVarint();
+        }
+        return Move.mv(from, to);
+    }
+
+    /** Return true iff the current game records scores. */
+    boolean hasScores() {
+        return (_flags & HAS_SCORES) != 0;
+    }
+
+    /** Return true iff the current game records thinking times. */
+    boolean hasTimes() {
+        return (_flags & HAS_TIMES) != 0;
+    }
+
+    /** Return the score of the last move read (0 if none recorded). */
+    int score() {
+        return _score;
+    }
+
+    /** Return the thinking time in milliseconds of the last move read (0
+     *  if none recorded). */
+    int millis() {
+        return _millis;
+    }
+
+    /** Return the winner of the game just finished, or null if it has
+     *  not finished or had no winner. */
+    Piece winner() {
+        return _winner == EMPTY ? null : _winner;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    /** Return the square of the piece of rank RANK among those of the
+     *  side to move on BOARD. */
+    private static Square pieceOfRank(Board board, int rank) throws
+        IOException {
+        Piece side = board.turn().side();
+        for (int i = 0; i < NUM_SQUARES; i += 1) {
+            if (board.get(sq(i)).side() == side) {
+                if (rank == 0) {
+                    return sq(i);
+                }
+                rank -= 1;
+            }
+        }
+        throw new IOException("move of a nonexistent piece");
+    }
+
+    /** Return the next byte of input.  Throws EOFException at the end of
+     *  input. */
+    private int readByte() throws IOException {
+        int b = _in.read();
+        if (b < 0) {
+            throw new EOFException("truncated game file");
+        }
+        return b;
+    }
+
+    /** Return the next unsigned variable-length integer of input. */
+    private int readVarint() throws IOException {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = readByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+    }
+
+    /** Source of the encoded games. */
+    private final InputStream _in;
+    /** Flags of the current game. */
+    private int _flags;
+    /** Score and thinking time of the last move. */
+    private int _score, _millis;
+    /** Winner of the last game finished. */
+    private Piece _winner;
+}
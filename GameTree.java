@@ -0,0 +1,226 @@
+package tablut;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static tablut.Utils.error;
+
+/** The moves played from a starting position, with all the variations
+ *  tried, as a tree.  Each node holds only its move and links to its
+ *  parent, its first child and its next sibling, so that a line of play
+ *  costs a few words per move and all lines share their common beginning.
+ *  Nodes are never removed, and a node's move, parent, and ply never
+ *  change, so a Node stays valid (and names the same position) for as
+ *  long as its tree does.  Positions are not stored: the tree keeps the
+ *  starting position in the notation of Notation, and moves a Board
+ *  between nodes by undoing and making the moves on the path between
+ *  them.
+ *
+ *  The tree has a current node, which is where the next move played is
+ *  added.  Taking back a move just makes the parent current.
+ *  @author Vineet Vashist
+ */
+final class GameTree {
+
+    /** A tree whose root is the position now on START. */
+    GameTree(Board start) {
+        _start = Notation.format(start);
+        _root = _current = new Node(null, null);
+    }
+
+    /** Return the node of the starting position. */
+    Node root() {
+        return _root;
+    }
+
+    /** Return the current node. */
+    Node current() {
+        return _current;
+    }
+
+    /** Return the starting position, in the notation of Notation. */
+    String start() {
+        return _start;
+    }
+
+    /** Record that MOVE was played from the current node, and make its
+     *  result current.  If MOVE has already been played from there,
+     *  reuses that node; otherwise MOVE starts a new variation (the main
+     *  line if it is the first).  Returns the new current node. */
+    Node play(Move move) {
+        Node child = _current.child(move);
+        if (child == null) {
+            child = new Node(_current, move);
+        }
+        _current = child;
+        return child;
+    }
+
+    /** Take back the move that led to the current node, making its parent
+     *  current, and return the move taken back.  The variation remains
+     *  in the tree. */
+    Move back() {
+        if (_current == _root) {
+            throw error("no move to take back");
+        }
+        Move result = _current.move();
+        _current = _current.parent();
+        return result;
+    }
+
+    /** Make NODE, one of mine, current, and change BOARD, which holds the
+     *  position at the current node (with the moves since the root still
+     *  undoable), to NODE's position in the same way.  Throws
+     *  IllegalArgumentException, changing nothing, if BOARD's move limit
+     *  would prevent a move on the way (Board.makeMove makes moves only
+     *  until the move count exceeds twice the limit). */
+    void jump(Node node, Board board) {
+        int moveCount = board.moveCount() - _current.ply() + node.ply();
+        if (board.moveLimit() != -1
+            && moveCount > 2 * board.moveLimit() + 1) {
+            throw error("that position is beyond the move limit");
+        }
+        Node common = commonAncestor(_current, node);
+        for (Node n = _current; n != common; n = n.parent()) {
+            board.undo();
+        }
+        ArrayList<Move> path = new ArrayList<>(node.ply() - common.ply());
+        for (Node n = node; n != common; n = n.parent()) {
+            path.add(n.move());
+        }
+        for (int k = path.size() - 1; k >= 0; k -= 1) {
+            board.makeMove(path.get(k));
+        }
+        _current = node;
+    }
+
+    /** Set BOARD to the position at NODE, one of mine, rebuilding it from
+     *  the starting position, using NOTATION to read that.  NODE does not
+     *  become current. */
+    void position(Node node, Board board, Notation notation) {
+        notation.parse(_start, board);
+        for (Move move : node.line()) {
+            board.makeMove(move);
+        }
+    }
+
+    /** Return the node of the ply-PLY position on the line through the
+     *  current node: an ancestor of it, or, if PLY is greater than its
+     *  ply, the end of the main line of its descendants after that many
+     *  moves. */
+    Node atPly(int ply) {
+        Node result = _current;
+        while (result.ply() > ply) {
+            result = result.parent();
+        }
+        while (result.ply() < ply) {
+            if (result.variations().isEmpty()) {
+                throw error("no move %d in this line", ply);
+            }
+            result = result.variations().get(0);
+        }
+        return result;
+    }
+
+    /** Return the deepest node that is an ancestor of (or is) both A and
+     *  B. */
+    private static Node commonAncestor(Node a, Node b) {
+        while (a.ply() > b.ply()) {
+            a = a.parent();
+        }
+        while (b.ply() > a.ply()) {
+            b = b.parent();
+        }
+        while (a != b) {
+            a = a.parent();
+            b = b.parent();
+        }
+        return a;
+    }
+
+    /** One position of a GameTree, reached by a move from its parent. */
+    static final class Node {
+
+        /** A new last child of PARENT (or the root, if PARENT is null),
+         *  reached by MOVE. */
+        private Node(Node parent, Move move) {
+            _parent = parent;
+            _move = move;
+            if (parent == null) {
+                _ply = 0;
+            } else {
+                _ply = parent._ply + 1;
+                if (parent._firstChild == null) {
+                    parent._firstChild = this;
+                } else {
+                    Node last;
+                    for (last = parent._firstChild; last._nextSibling != null;
+                         last = last._nextSibling) {
+                        continue;
+                    }
+                    last._nextSibling = this;
+                }
+            }
+        }
+
+        /** Return the move that reached me (null for the root). */
+        Move move() {
+            return _move;
+        }
+
+        /** Return my parent (null for the root). */
+        Node parent() {
+            return _parent;
+        }
+
+        /** Return the number of moves from the root to me. */
+        int ply() {
+            return _ply;
+        }
+
+        /** Return my child reached by MOVE, or null if there is none. */
+        Node child(Move move) {
+            for (Node c = _firstChild; c != null; c = c._nextSibling) {
+                if (c._move == move) {
+                    return c;
+                }
+            }
+            return null;
+        }
+
+        /** Return my children, the main line first and the other
+         *  variations in the order they were played. */
+        List<Node> variations() {
+            ArrayList<Node> result = new ArrayList<>();
+            for (Node c = _firstChild; c != null; c = c._nextSibling) {
+                result.add(c);
+            }
+            return result;
+        }
+
+        /** Return the moves from the root to me. */
+        List<Move> line() {
+            Move[] moves = new Move[_ply];
+            for (Node n = this; n._parent != null; n = n._parent) {
+                moves[n._ply - 1] = n._move;
+            }
+            return List.of(moves);
+        }
+
+        /** The move that reached me. */
+        private final Move _move;
+        /** My parent. */
+        private final Node _parent;
+        /** My depth. */
+        private final int _ply;
+        /** My first child and next sibling, or null. */
+        private Node _firstChild, _nextSibling;
+    }
+
+    /** The starting position, in the notation of Notation. */
+    private final String _start;
+    /** The node of the starting position. */
+    private final Node _root;
+    /** The current node. */
+    private Node _current;
+}
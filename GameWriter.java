@@ -0,0 +1,139 @@
+package tablut;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static tablut.Piece.*;
+import static tablut.Square.*;
+
+/** A writer of games in compact binary form, one move at a time.
+ *
+ *  A file starts with the four bytes "TBLG" and a version byte, and is
+ *  followed by any number of games, each starting from the initial
+ *  position.  A game is a flags byte (HAS_SCORES, HAS_TIMES), the moves,
+ *  the two bytes of END_OF_GAME and a byte holding the ordinal of the
+ *  winning Piece (EMPTY if none).
+ *
+ *  A move is usually one byte, giving which of the mover's pieces moves
+ *  (its rank, counting from 0, among the mover's pieces in order of square
+ *  index), whether it moves along its row (0) or column (1), and which of
+ *  the 8 other squares of that row or column it moves to (in increasing
+ *  order): rank << 4 | axis << 3 | target.  Moves of pieces of rank
+ *  15 or more take two bytes, 0xF0 | (from >> 4) and (from & 0xF) << 4 |
+ *  axis << 3 | target, where from is the index of the square moved from.
+ *  If the game has scores, each move is followed by its score as a
+ *  zigzag-encoded variable-length integer (7 bits per byte, low-order
+ *  first, high bit set on all but the last byte); if it has times, by the
+ *  thinking time in milliseconds in the same form.
+ *  @author Vineet Vashist
+ */
+class GameWriter implements Closeable {
+
+    /** Bytes that start every game file. */
+    static final byte[] MAGIC = { 'T', 'B', 'L', 'G' };
+    /** Current version of the format. */
+    static final int VERSION = 1;
+    /** Game flags: moves have scores, moves have times. */
+    static final int HAS_SCORES = 1, HAS_TIMES = 2;
+    /** The two-byte code that ends the moves of a game. */
+    static final int END_OF_GAME = 0xFFFF;
+    /** Pieces of at least this rank need a two-byte move. */
+    static final int MAX_SHORT_RANK = 15;
+
+    /** A writer of games to OUT. */
+    GameWriter(OutputStream out) throws IOException {
+        _out = new BufferedOutputStream(out, 1 << 16);
+        _out.write(MAGIC);
+        _out.write(VERSION);
+    }
+
+    /** Begin a new game, recording scores iff SCORES and thinking times
+     *  iff TIMES with each move. */
+    void startGame(boolean scores, boolean times) throws IOException {
+        _flags = (scores ? HAS_SCORES : 0) | (times ? HAS_TIMES : 0);
+        _out.write(_flags);
+    }
+
+    /** Record MOVE, made from the current position of BOARD, in a game
+     *  without scores or times. */
+    void move(Board board, Move move) throws IOException {
+        move(board, move, 0, 0);
+    }
+
+    /** Record MOVE, made from the current position of BOARD, with score
+     *  SCORE and thinking time MILLIS (each recorded only if requested in
+     *  startGame). */
+    void move(Board board, Move move, int score, int millis)
+        throws IOException {
+        Square from = move.from(), to = move.to();
+        int axis, target;
+        if (from.row() == to.row()) {
+            axis = 0;
+            target = to.col() < from.col() ? to.col() : to.col() - 1;
+        } else {
+            axis = 1;
+            target = to.row() < from.row() ? to.row() : to.row() - 1;
+        }
+        int rank = rank(board, from);
+        int low = axis << 3 | target;
+        if (rank < MAX_SHORT_RANK) {
+            _out.write(rank << 4 | low);
+        } else {
+            _out.write(0xF0 | from.index() >> 4);
+            _out.write((from.index() & 0xF) << 4 | low);
+        }
+        if ((_flags & HAS_SCORES) != 0) {
+            writeVarint((score << 1) ^ (score >> 31));
+        }
+        if ((_flags & HAS_TIMES) != 0) {
+            writeVarint(millis);
+        }
+    }
+
+    /** End the current game, which was won by WINNER (null if
+     *  unfinished). */
+    void endGame(Piece winner) throws IOException {
+        _out.write(END_OF_GAME >> 8);
+        _out.write(END_OF_GAME & 0xFF);
+        _out.write((winner == null ? EMPTY : winner).ordinal());
+    }
+
+    /** Write out any buffered data. */
+    void flush() throws IOException {
+        _out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _out.close();
+    }
+
+    /** Return the rank of the piece on FROM among the pieces of its side
+     *  on BOARD, in order of square index. */
+    static int rank(Board board, Square from) {
+        Piece side = board.get(from).side();
+        int rank = 0;
+        for (int i = 0; i < from.index(); i += 1) {
+            if (board.get(sq(i)).side() == side) {
+                rank += 1;
+            }
+        }
+        return rank;
+    }
+
+    /** Write the unsigned value V in variable-length form. */
+    private void writeVarint(int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            _out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        _out.write(v);
+    }
+
+    /** Destination of the encoded games. */
+    private final OutputStream _out;
+    /** Flags of the current game. */
+    private int _flags;
+}
@@ -1,9 +1,12 @@
 package tablut;
 
 import java.util.List;
+import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
 
 import static tablut.Utils.error;
@@ -15,18 +18,35 @@ import ucb.util.CommandArgs;
  */
 public class Main {
 
-    /** The main program.  ARGS may contain the option --display. */
+    /** The main program.  ARGS may contain the option --display, or
+     *  --batch to replay a script of commands without any players, or
+     *  --server=ADDRESS to serve games to clients on a local socket (see
+     *  Server), with --metrics=PORT|FILE to export the server's metrics
+     *  (see Metrics). */
     public static void main(String... args) {
 
         CommandArgs options =
-            new CommandArgs("--display --testing --strict --log={0,1} --={0,2}",
+            new CommandArgs("--display --batch --testing --strict --log={0,1}"
+                            + " --network={0,1} --server={0,1} --metrics={0,1}"
+                            + " --={0,2}",
                             args);
-        if (!options.ok()) {
-            System.err.println("Usage: java tablut.Main [--display]"
-                               + " [--log=FILE] [--strict] [INPUT [OUTPUT]]");
+        if (!options.ok()
+            || (options.contains("--batch") && options.contains("--display"))) {
+            System.err.println("Usage: java tablut.Main [--display | --batch]"
+                               + " [--log=FILE[.gz]] [--strict]"
+                               + " [--network=FILE] [INPUT [OUTPUT]]");
+            System.err.println("       java tablut.Main --server=PORT|PATH"
+                               + " [--metrics=PORT|FILE]");
             System.exit(1);
         }
 
+        if (options.contains("--server")) {
+            serve(options.getFirst("--server"),
+                  options.contains("--metrics")
+                  ? options.getFirst("--metrics") : null);
+            return;
+        }
+
         List<String> files = options.get("--");
         if (!files.isEmpty()) {
             try {
@@ -52,22 +72,48 @@ public class Main {
         System.out.println("Tablut 61B, staff version 1.0");
 
         try {
-            control.play();
+            if (options.contains("--batch")) {
+                control.playBatch(new BufferedReader(
+                    new InputStreamReader(System.in), BATCH_BUFFER_SIZE));
+            } else {
+                control.play();
+            }
             if (!options.contains("--display")) {
                 System.exit(0);
             }
         } catch (IllegalStateException excp) {
             System.err.printf("Internal error: %s%n", excp.getMessage());
             System.exit(1);
+        } catch (IOException excp) {
+            System.err.printf("Could not read input: %s%n",
+                              excp.getMessage());
+            System.exit(1);
         }
 
     }
 
+    /** Serve games on ADDRESS until killed, exporting metrics to METRICS
+     *  (see Metrics.export) unless it is null. */
+    private static void serve(String address, String metrics) {
+        try (Server server = new Server(address, AI.DEFAULT_DEPTH);
+             Closeable export = metrics == null ? null
+                 : Metrics.REGISTRY.export(metrics)) {
+            System.out.printf("Serving on %s%n", server.address());
+            if (export != null) {
+                System.out.printf("Exporting metrics to %s%n", metrics);
+            }
+            server.serve();
+        } catch (IOException | IllegalArgumentException excp) {
+            System.err.printf("Server error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
     /** Return an appropriate Controller as indicated by OPTIONS. */
     private static Controller getController(CommandArgs options) {
         Player manualPlayer;
         GUI gui;
-        PrintStream log;
+        AsyncLog log;
         View view;
         Reporter reporter;
 
@@ -90,13 +136,25 @@ public class Main {
         log = null;
         if (options.contains("--log")) {
             try {
-                log = new PrintStream(options.getFirst("--log"));
+                log = AsyncLog.open(options.getFirst("--log"));
             } catch (IOException excp) {
                 throw error("Could not open log file");
             }
         }
 
+        AI engine = new AI();
+        if (options.contains("--network")) {
+            try {
+                engine.setNetwork(Network.load(options.getFirst("--network")));
+            } catch (IOException excp) {
+                throw error("Could not read network: %s", excp.getMessage());
+            }
+        }
+
         return new Controller(view, log, reporter, manualPlayer,
-                              new AI(), options.contains("--strict"));
+                              engine, options.contains("--strict"));
     }
+
+    /** Size of the input buffer for --batch. */
+    private static final int BATCH_BUFFER_SIZE = 1 << 16;
 }
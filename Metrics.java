@@ -0,0 +1,344 @@
+package tablut;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpServer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static tablut.Utils.error;
+
+/** A registry of metrics (counters, gauges and histograms) reported in
+ *  the text format read by Prometheus, either as a file rewritten every
+ *  few seconds (for a node exporter's textfile collector) or from a local
+ *  HTTP endpoint, /metrics.  Each metric is a set of striped counters
+ *  (LongAdders), so that any number of threads may update it at once
+ *  without locking or contending for one memory location; reading it
+ *  sums the stripes.
+ *
+ *  REGISTRY holds the program's own metrics, below, which are updated by
+ *  AI, Tournament and Server.  Rates such as moves or positions searched
+ *  per second, and percentiles of thinking time, are left to the
+ *  monitoring system (e.g., rate(tablut_nodes_total[1m]) and
+ *  histogram_quantile(0.99, rate(tablut_think_seconds_bucket[5m]))).
+ *  @author Vineet Vashist
+ */
+final class Metrics {
+
+    /** The registry of the program's metrics. */
+    static final Metrics REGISTRY = new Metrics();
+
+    /** Number of games being played. */
+    static final Gauge GAMES_IN_PROGRESS =
+        REGISTRY.gauge("tablut_games_in_progress", "Games being played.");
+    /** Number of games finished or abandoned. */
+    static final Counter GAMES =
+        REGISTRY.counter("tablut_games_total",
+                         "Games finished or abandoned.");
+    /** Number of moves made in games. */
+    static final Counter MOVES =
+        REGISTRY.counter("tablut_moves_total", "Moves made in games.");
+    /** Number of positions searched by engines. */
+    static final Counter NODES =
+        REGISTRY.counter("tablut_nodes_total",
+                         "Positions searched by engines.");
+    /** Time taken by engines to choose moves. */
+    static final Histogram THINK_TIME =
+        REGISTRY.histogram("tablut_think_seconds",
+                           "Time taken by engines to choose a move.",
+                           0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1,
+                           0.25, 0.5, 1, 2.5, 5, 10);
+    /** Depth of the undo stack (moves that could be undone) at the end of
+     *  each game. */
+    static final Histogram UNDO_DEPTH =
+        REGISTRY.histogram("tablut_undo_stack_depth",
+                           "Undoable moves at the end of each game.",
+                           10, 20, 50, 100, 200, 500, 1000);
+
+    /** Return a new counter named NAME, described by HELP. */
+    Counter counter(String name, String help) {
+        return register(new Counter(name, help));
+    }
+
+    /** Return a new gauge named NAME, described by HELP. */
+    Gauge gauge(String name, String help) {
+        return register(new Gauge(name, help));
+    }
+
+    /** Return a new histogram named NAME, described by HELP, whose
+     *  buckets have the upper bounds BOUNDS, in increasing order (and
+     *  +Inf). */
+    Histogram histogram(String name, String help, double... bounds) {
+        return register(new Histogram(name, help, bounds));
+    }
+
+    /** Return the current values of my metrics in the Prometheus text
+     *  format. */
+    String text() {
+        StringBuilder out = new StringBuilder();
+        for (Metric metric : _metrics) {
+            out.append("# HELP ").append(metric._name).append(' ')
+                .append(metric._help).append('\n');
+            out.append("# TYPE ").append(metric._name).append(' ')
+                .append(metric.type()).append('\n');
+            metric.write(out);
+        }
+        return out.toString();
+    }
+
+    /** Replace the file FILE with text(), atomically, so that a reader
+     *  never sees a partial file. */
+    void writeFile(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, text(), UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Start serving text() at /metrics over HTTP on PORT of the loopback
+     *  interface (any free port if 0), and return the server. */
+    HttpServer serve(int port) throws IOException {
+        HttpServer server = HttpServer.create(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = text().getBytes(UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /** Export my metrics to WHERE until the result is closed: over HTTP
+     *  (see serve) if WHERE is a port number, and otherwise to the file
+     *  named WHERE, rewritten every EXPORT_PERIOD seconds and on
+     *  closing. */
+    Closeable export(String where) throws IOException {
+        if (!where.isEmpty() && where.chars().allMatch(Character::isDigit)) {
+            int port;
+            try {
+                port = Integer.parseInt(where);
+            } catch (NumberFormatException excp) {
+                throw error("bad port: %s", where);
+            }
+            HttpServer server = serve(port);
+            return () -> server.stop(0);
+        }
+        Path file = Path.of(where);
+        writeFile(file);
+        ScheduledExecutorService writer =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tablut-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        writer.scheduleWithFixedDelay(() -> {
+            try {
+                writeFile(file);
+            } catch (IOException excp) {
+                /* Try again next time. */
+                return;
+            }
+        }, EXPORT_PERIOD, EXPORT_PERIOD, TimeUnit.SECONDS);
+        return () -> {
+            writer.shutdownNow();
+            writeFile(file);
+        };
+    }
+
+    /** Add METRIC to me and return it. */
+    private <T extends Metric> T register(T metric) {
+        for (Metric other : _metrics) {
+            if (other._name.equals(metric._name)) {
+                throw error("duplicate metric: %s", metric._name);
+            }
+        }
+        _metrics.add(metric);
+        return metric;
+    }
+
+    /** A named metric. */
+    abstract static class Metric {
+        /** A metric named NAME, described by HELP. */
+        Metric(String name, String help) {
+            _name = name;
+            _help = help;
+        }
+
+        /** Return my Prometheus type. */
+        abstract String type();
+
+        /** Append my samples to OUT. */
+        abstract void write(StringBuilder out);
+
+        /** My name. */
+        protected final String _name;
+        /** My description. */
+        protected final String _help;
+    }
+
+    /** A count that only increases. */
+    static final class Counter extends Metric {
+        /** A counter named NAME, described by HELP. */
+        private Counter(String name, String help) {
+            super(name, help);
+        }
+
+        /** Add 1 to me. */
+        void inc() {
+            _count.increment();
+        }
+
+        /** Add N >= 0 to me. */
+        void add(long n) {
+            _count.add(n);
+        }
+
+        /** Return my value. */
+        long value() {
+            return _count.sum();
+        }
+
+        @Override
+        String type() {
+            return "counter";
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            out.append(_name).append(' ').append(value()).append('\n');
+        }
+
+        /** My value. */
+        private final LongAdder _count = new LongAdder();
+    }
+
+    /** A value that may go up or down. */
+    static final class Gauge extends Metric {
+        /** A gauge named NAME, described by HELP. */
+        private Gauge(String name, String help) {
+            super(name, help);
+        }
+
+        /** Add 1 to me. */
+        void inc() {
+            _value.increment();
+        }
+
+        /** Subtract 1 from me. */
+        void dec() {
+            _value.decrement();
+        }
+
+        /** Return my value. */
+        long value() {
+            return _value.sum();
+        }
+
+        @Override
+        String type() {
+            return "gauge";
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            out.append(_name).append(' ').append(value()).append('\n');
+        }
+
+        /** My value. */
+        private final LongAdder _value = new LongAdder();
+    }
+
+    /** A distribution of observed values, as counts of the values in each
+     *  of a fixed set of buckets, and their sum. */
+    static final class Histogram extends Metric {
+        /** A histogram named NAME, described by HELP, whose buckets have
+         *  the upper bounds BOUNDS (and +Inf). */
+        private Histogram(String name, String help, double[] bounds) {
+            super(name, help);
+            for (int i = 1; i < bounds.length; i += 1) {
+                if (bounds[i] <= bounds[i - 1]) {
+                    throw error("histogram bounds out of order");
+                }
+            }
+            _bounds = bounds.clone();
+            _counts = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < _counts.length; i += 1) {
+                _counts[i] = new LongAdder();
+            }
+        }
+
+        /** Record the value VALUE. */
+        void observe(double value) {
+            int i;
+            for (i = 0; i < _bounds.length && value > _bounds[i]; i += 1) {
+                continue;
+            }
+            _counts[i].increment();
+            _sum.add(value);
+        }
+
+        /** Return the number of values observed. */
+        long count() {
+            long count = 0;
+            for (LongAdder c : _counts) {
+                count += c.sum();
+            }
+            return count;
+        }
+
+        @Override
+        String type() {
+            return "histogram";
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            long cumulative = 0;
+            for (int i = 0; i < _counts.length; i += 1) {
+                cumulative += _counts[i].sum();
+                out.append(_name).append("_bucket{le=\"")
+                    .append(i < _bounds.length ? Double.toString(_bounds[i])
+                            : "+Inf")
+                    .append("\"} ").append(cumulative).append('\n');
+            }
+            out.append(_name).append("_sum ").append(_sum.sum())
+                .append('\n');
+            out.append(_name).append("_count ").append(cumulative)
+                .append('\n');
+        }
+
+        /** Upper bounds of the buckets but the last. */
+        private final double[] _bounds;
+        /** Number of values observed in each bucket. */
+        private final LongAdder[] _counts;
+        /** Sum of the values observed. */
+        private final DoubleAdder _sum = new DoubleAdder();
+    }
+
+    /** Content type of the Prometheus text format. */
+    private static final String CONTENT_TYPE =
+        "text/plain; version=0.0.4; charset=utf-8";
+
+    /** Seconds between rewrites of a metrics file. */
+    private static final int EXPORT_PERIOD = 5;
+
+    /** My metrics, in order of registration. */
+    private final List<Metric> _metrics = new CopyOnWriteArrayList<>();
+}
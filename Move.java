@@ -3,9 +3,9 @@ package tablut;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 import static tablut.Square.sq;
+import static tablut.Square.BOARD_SIZE;
 import static tablut.Square.NUM_SQUARES;
 import static tablut.Square.ROOK_SQUARES;
 import static tablut.Square.SQUARE_LIST;
@@ -35,6 +35,12 @@ final class Move {
         return _to;
     }
 
+    /** Return the move to which symmetry number SYM (see
+     *  Square.NUM_SYMMETRIES) carries me. */
+    Move symmetric(int sym) {
+        return mv(_from.symmetric(sym), _to.symmetric(sym));
+    }
+
     /** Return the unique Move FROM-TO, or null if this is not a valid
      *  move. */
     static Move mv(Square from, Square to) {
@@ -51,24 +57,46 @@ final class Move {
     /** Return the Move denoted by STR, if STR denotes a move with
      *  valid syntax, and null otherwise. */
     static Move mv(String str) {
-        _moveMatcher.reset(str);
-        if (_moveMatcher.matches()) {
-            Square from = sq(_moveMatcher.group(1));
-            Square to;
-            if (_moveMatcher.group(5) == null) {
-                to = sq(_moveMatcher.group(4), _moveMatcher.group(3));
-            } else {
-                to = sq(_moveMatcher.group(2), _moveMatcher.group(5));
-            }
-            return mv(from, to);
+        return mv(str, 0, str.length());
+    }
+
+    /** Return the Move denoted by characters START to END-1 of STR, if
+     *  they denote a move with valid syntax, and null otherwise. */
+    static Move mv(CharSequence str, int start, int end) {
+        if (!isGrammaticalMove(str, start, end)) {
+            return null;
+        }
+        Square from = sq(str.charAt(start) - 'a', str.charAt(start + 1) - '1');
+        char dest = str.charAt(start + 3);
+        if (dest >= 'a') {
+            return mv(from, sq(dest - 'a', from.row()));
+        } else {
+            return mv(from, sq(from.col(), dest - '1'));
         }
-        return null;
     }
 
     /** Return true iff STR has the right format for a Move. */
     static boolean isGrammaticalMove(String str) {
-        _moveMatcher.reset(str);
-        return _moveMatcher.matches();
+        return isGrammaticalMove(str, 0, str.length());
+    }
+
+    /** Return true iff characters START to END-1 of STR match
+     *  MOVE_PATTERN.  Checks each character directly, which is much
+     *  faster than using the pattern. */
+    static boolean isGrammaticalMove(CharSequence str, int start, int end) {
+        if (end - start != 4 || str.charAt(start + 2) != '-') {
+            return false;
+        }
+        char dest = str.charAt(start + 3);
+        return inRange(str.charAt(start), 'a')
+            && inRange(str.charAt(start + 1), '1')
+            && (inRange(dest, 'a') || inRange(dest, '1'));
+    }
+
+    /** Return true iff C is one of the BOARD_SIZE characters starting at
+     *  FIRST. */
+    private static boolean inRange(char c, char first) {
+        return c >= first && c < first + BOARD_SIZE;
     }
 
     @Override
@@ -135,6 +163,4 @@ final class Move {
     private final Square _from, _to;
     /** The printed form of this Move. */
     private String _str;
-    /**  A utility Matcher for moves, using MOVE_PATTERN. */
-    private static Matcher _moveMatcher = MOVE_PATTERN.matcher("");
 }
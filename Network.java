@@ -0,0 +1,249 @@
+package tablut;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static tablut.Piece.*;
+import static tablut.Square.*;
+
+/** A small neural network that evaluates positions, as an alternative to
+ *  AI's hand-written evaluation.  Its input is one feature for each
+ *  (piece, square) pair present on the board, and its hidden layer
+ *  (HIDDEN values) is the sum of the first-layer weights of the features
+ *  present plus a bias.  Since a move changes only a few features, the
+ *  hidden layer is kept in an Accumulator attached to a Board, which the
+ *  Board updates as each square changes, rather than being recomputed at
+ *  each evaluation.  The output is the weighted sum of the hidden values,
+ *  each clipped to [0, QA], plus a bias for the side to move.
+ *
+ *  Weights are 16-bit fixed point: first-layer weights and biases are
+ *  scaled by QA and output weights by QB, so that the output scaled by
+ *  1/(QA * QB) is the network's value, which evaluate multiplies by the
+ *  network's scale to give scores in the units of AI.staticScore
+ *  (favoring white).
+ *
+ *  A network is read from a file of big-endian values: the bytes "TNN",
+ *  a version byte (1), the number of hidden values (an int), the scale (an
+ *  int), the first-layer weights (INPUTS * HIDDEN shorts, those of each
+ *  feature together), the first-layer biases (HIDDEN shorts), the output
+ *  weights (HIDDEN shorts), and the output biases for black and for white
+ *  to move (2 ints).  Feature (p, s) for Piece p on the square with index
+ *  s is number (p.ordinal() - 1) * NUM_SQUARES + s.
+ *  @author Vineet Vashist
+ */
+final class Network {
+
+    /** Number of input features. */
+    static final int INPUTS = 3 * NUM_SQUARES;
+    /** Fixed-point scales of the hidden values and of the output
+     *  weights. */
+    static final int QA = 255, QB = 64;
+
+    /** A network with HIDDEN hidden values, first-layer weights WEIGHTS
+     *  and biases BIASES, output weights OUTPUT and output biases
+     *  OUTPUTBIAS (for black and white to move), whose output is scaled
+     *  by SCALE. */
+    Network(int hidden, short[] weights, short[] biases, short[] output,
+            int[] outputBias, int scale) {
+        if (hidden < 1 || weights.length != INPUTS * hidden
+            || biases.length != hidden || output.length != hidden
+            || outputBias.length != 2) {
+            throw new IllegalArgumentException("inconsistent network");
+        }
+        _hidden = hidden;
+        _weights = weights;
+        _biases = biases;
+        _output = output;
+        _outputBias = outputBias;
+        _scale = scale;
+    }
+
+    /** Return the network in the file named NAME. */
+    static Network load(String name) throws IOException {
+        try (InputStream in = new FileInputStream(name)) {
+            return read(in);
+        }
+    }
+
+    /** Return the network read from IN. */
+    static Network read(InputStream in) throws IOException {
+        DataInputStream data =
+            new DataInputStream(new BufferedInputStream(in));
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC) || data.readByte() != VERSION) {
+            throw new IOException("not a network file of a known version");
+        }
+        int hidden = data.readInt();
+        if (hidden < 1 || hidden > MAX_HIDDEN) {
+            throw new IOException("bad network size");
+        }
+        int scale = data.readInt();
+        short[] weights = readShorts(data, INPUTS * hidden),
+            biases = readShorts(data, hidden),
+            output = readShorts(data, hidden);
+        int[] outputBias = { data.readInt(), data.readInt() };
+        return new Network(hidden, weights, biases, output, outputBias,
+                           scale);
+    }
+
+    /** Write me to OUT in the form read by read. */
+    void write(OutputStream out) throws IOException {
+        DataOutputStream data =
+            new DataOutputStream(new BufferedOutputStream(out));
+        data.write(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(_hidden);
+        data.writeInt(_scale);
+        for (short[] values : new short[][] { _weights, _biases, _output }) {
+            for (short v : values) {
+                data.writeShort(v);
+            }
+        }
+        data.writeInt(_outputBias[0]);
+        data.writeInt(_outputBias[1]);
+        data.flush();
+    }
+
+    /** Return a network of HIDDEN hidden values with random weights from a
+     *  generator seeded with SEED.  Intended for testing and as a starting
+     *  point for training. */
+    static Network random(int hidden, long seed) {
+        Random random = new Random(seed);
+        short[] weights = new short[INPUTS * hidden],
+            biases = new short[hidden], output = new short[hidden];
+        for (int i = 0; i < weights.length; i += 1) {
+            weights[i] = (short) (random.nextInt(2 * QA / 8) - QA / 8);
+        }
+        for (int i = 0; i < hidden; i += 1) {
+            biases[i] = (short) random.nextInt(QA / 2);
+            output[i] = (short) (random.nextInt(2 * QB) - QB);
+        }
+        return new Network(hidden, weights, biases, output,
+                           new int[] { -QA * QB / 8, QA * QB / 8 }, 1000);
+    }
+
+    /** Attach a new Accumulator of mine to BOARD, computed from its
+     *  current position. */
+    void attach(Board board) {
+        Accumulator acc = new Accumulator(this);
+        board.setAccumulator(acc);
+        acc.refresh(board);
+    }
+
+    /** Return my evaluation of the position on BOARD, favoring white, in
+     *  the units of AI.staticScore.  BOARD must have an Accumulator of
+     *  mine attached, in which case this allocates nothing. */
+    int evaluate(Board board) {
+        return evaluate(board, EvalKernel.SCALAR);
+    }
+
+    /** Return evaluate(BOARD), computing the output layer with KERNEL. */
+    int evaluate(Board board, EvalKernel kernel) {
+        Accumulator acc = board.accumulator();
+        assert acc != null && acc._network == this;
+        long sum = _outputBias[board.turn() == WHITE ? 1 : 0]
+            + kernel.clippedDot(acc._values, _output, QA, _hidden);
+        return (int) (sum * _scale / (QA * QB));
+    }
+
+    /** Return the feature number of Piece P on the square with index
+     *  INDEX. */
+    private static int feature(Piece p, int index) {
+        return (p.ordinal() - 1) * NUM_SQUARES + index;
+    }
+
+    /** The hidden values of a Network for one position, kept up to date by
+     *  the Board to which it is attached. */
+    static final class Accumulator {
+
+        /** An accumulator for NETWORK, initially holding its biases. */
+        Accumulator(Network network) {
+            _network = network;
+            _values = network._biases.clone();
+        }
+
+        /** Return a copy of me. */
+        Accumulator copy() {
+            Accumulator result = new Accumulator(_network);
+            System.arraycopy(_values, 0, result._values, 0, _values.length);
+            return result;
+        }
+
+        /** Recompute my values from the position on BOARD. */
+        void refresh(Board board) {
+            System.arraycopy(_network._biases, 0, _values, 0,
+                             _values.length);
+            for (int i = 0; i < NUM_SQUARES; i += 1) {
+                Square s = sq(i);
+                Piece p = board.get(s.col(), s.row());
+                if (p != EMPTY) {
+                    add(feature(p, i), 1);
+                }
+            }
+        }
+
+        /** Account for the change of the square with index INDEX from
+         *  containing OLD to containing NEW. */
+        void change(Piece old, Piece now, int index) {
+            if (old != EMPTY) {
+                add(feature(old, index), -1);
+            }
+            if (now != EMPTY) {
+                add(feature(now, index), 1);
+            }
+        }
+
+        /** Add SIGN times the weights of feature F to my values. */
+        private void add(int f, int sign) {
+            short[] weights = _network._weights;
+            int base = f * _values.length;
+            for (int i = 0; i < _values.length; i += 1) {
+                _values[i] += sign * weights[base + i];
+            }
+        }
+
+        /** The network whose hidden values I hold. */
+        private final Network _network;
+        /** The hidden values, scaled by QA. */
+        private final short[] _values;
+    }
+
+    /** Return the next N shorts of DATA. */
+    private static short[] readShorts(DataInputStream data, int n)
+        throws IOException {
+        short[] result = new short[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = data.readShort();
+        }
+        return result;
+    }
+
+    /** Bytes that start every network file. */
+    private static final byte[] MAGIC = { 'T', 'N', 'N' };
+    /** Current version of the file format. */
+    private static final int VERSION = 1;
+    /** Largest number of hidden values accepted from a file. */
+    private static final int MAX_HIDDEN = 4096;
+
+    /** Number of hidden values. */
+    private final int _hidden;
+    /** First-layer weights, those of each feature together. */
+    private final short[] _weights;
+    /** First-layer biases. */
+    private final short[] _biases;
+    /** Output weights. */
+    private final short[] _output;
+    /** Output biases for black and for white to move. */
+    private final int[] _outputBias;
+    /** Multiplier converting the network's value to a score. */
+    private final int _scale;
+}
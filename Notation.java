@@ -0,0 +1,208 @@
+package tablut;
+
+import static tablut.Board.SIZE;
+import static tablut.Piece.*;
+import static tablut.Square.*;
+import static tablut.Utils.error;
+
+/** A reader and writer of positions in a one-line notation like chess's
+ *  FEN.  A position is written
+ *  <pre>
+ *      ROWS SIDE MOVES LIMIT
+ *  </pre>
+ *  where ROWS gives rows 9 down to 1, separated by "/", each listing its
+ *  squares from column a to i as "B" (black), "W" (white), "K" (king), or
+ *  a digit n standing for n empty squares; SIDE is "b" or "w" for the side
+ *  to move; MOVES is the number of moves made so far; and LIMIT is the
+ *  move limit, or "-" if there is none.  The initial position is INITIAL.
+ *  Pieces may also be given in lower case.
+ *
+ *  A Notation holds the storage its parser needs, so that parsing
+ *  allocates nothing (except to report an error).  It is not safe to use
+ *  one Notation in several threads at once.
+ *  @author Vineet Vashist
+ */
+final class Notation {
+
+    /** The initial position. */
+    static final String INITIAL =
+        "3BBB3/4B4/4W4/B3W3B/BBWWKWWBB/B3W3B/4W4/4B4/3BBB3 b 0 -";
+
+    /** Set BOARD to the position written in TEXT.  Throws
+     *  IllegalArgumentException, leaving BOARD unchanged, if TEXT is not
+     *  a valid position. */
+    void parse(CharSequence text, Board board) {
+        parse(text, 0, text.length(), board);
+    }
+
+    /** Set BOARD to the position written in characters START to END-1 of
+     *  TEXT.  Throws IllegalArgumentException, leaving BOARD unchanged, if
+     *  they are not a valid position. */
+    void parse(CharSequence text, int start, int end, Board board) {
+        _text = text;
+        _pos = start;
+        _end = end;
+        int kings = 0;
+        for (int row = SIZE - 1; row >= 0; row -= 1) {
+            if (row < SIZE - 1) {
+                expect('/');
+            }
+            for (int col = 0; col < SIZE; ) {
+                char c = next();
+                if (c >= '1' && c <= '9') {
+                    int n = c - '0';
+                    if (col + n > SIZE) {
+                        throw error("row %d is too long", row + 1);
+                    }
+                    for (; n > 0; n -= 1, col += 1) {
+                        _contents[row * SIZE + col] = EMPTY;
+                    }
+                } else {
+                    Piece p = piece(c);
+                    kings += p == KING ? 1 : 0;
+                    _contents[row * SIZE + col] = p;
+                    col += 1;
+                }
+            }
+        }
+        if (kings > 1) {
+            throw error("more than one king");
+        }
+        expect(' ');
+        Piece side;
+        switch (next()) {
+        case 'b': case 'B':
+            side = BLACK;
+            break;
+        case 'w': case 'W':
+            side = WHITE;
+            break;
+        default:
+            throw error("bad side to move");
+        }
+        expect(' ');
+        int moves = number();
+        expect(' ');
+        int limit;
+        if (_pos < _end && _text.charAt(_pos) == '-') {
+            _pos += 1;
+            limit = -1;
+        } else {
+            limit = number();
+            if (2 * limit <= moves) {
+                throw error("move limit already reached");
+            }
+        }
+        if (_pos != _end) {
+            throw error("extra text after position");
+        }
+        _text = null;
+        board.setPosition(_contents, side, moves, limit);
+    }
+
+    /** Return the position on BOARD in this notation. */
+    static String format(Board board) {
+        StringBuilder out = new StringBuilder(MAX_LENGTH);
+        format(board, out);
+        return out.toString();
+    }
+
+    /** Append the position on BOARD in this notation to OUT. */
+    static void format(Board board, StringBuilder out) {
+        for (int row = SIZE - 1; row >= 0; row -= 1) {
+            if (row < SIZE - 1) {
+                out.append('/');
+            }
+            int empty = 0;
+            for (int col = 0; col < SIZE; col += 1) {
+                Piece p = board.get(col, row);
+                if (p == EMPTY) {
+                    empty += 1;
+                } else {
+                    if (empty > 0) {
+                        out.append((char) ('0' + empty));
+                        empty = 0;
+                    }
+                    out.append(p == KING ? 'K' : p == WHITE ? 'W' : 'B');
+                }
+            }
+            if (empty > 0) {
+                out.append((char) ('0' + empty));
+            }
+        }
+        out.append(board.turn() == BLACK ? " b " : " w ");
+        out.append(board.moveCount()).append(' ');
+        if (board.moveLimit() == -1) {
+            out.append('-');
+        } else {
+            out.append(board.moveLimit());
+        }
+    }
+
+    /** Return the next character of the text being parsed. */
+    private char next() {
+        if (_pos >= _end) {
+            throw error("incomplete position");
+        }
+        _pos += 1;
+        return _text.charAt(_pos - 1);
+    }
+
+    /** Check that the next character of the text being parsed is C. */
+    private void expect(char c) {
+        if (next() != c) {
+            throw error("expected '%c' at position %d", c, _pos - 1);
+        }
+    }
+
+    /** Return the Piece denoted by C. */
+    private static Piece piece(char c) {
+        switch (c) {
+        case 'B': case 'b':
+            return BLACK;
+        case 'W': case 'w':
+            return WHITE;
+        case 'K': case 'k':
+            return KING;
+        default:
+            throw error("bad piece '%c'", c);
+        }
+    }
+
+    /** Return the unsigned decimal number next in the text being
+     *  parsed. */
+    private int number() {
+        int n = 0, digits = 0;
+        while (_pos < _end) {
+            char c = _text.charAt(_pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            n = 10 * n + (c - '0');
+            if (n > MAX_NUMBER) {
+                throw error("number too large");
+            }
+            digits += 1;
+            _pos += 1;
+        }
+        if (digits == 0) {
+            throw error("expected a number at position %d", _pos);
+        }
+        return n;
+    }
+
+    /** Largest move count or move limit accepted. */
+    private static final int MAX_NUMBER = 99999;
+
+    /** Longest likely length of a position. */
+    private static final int MAX_LENGTH = 100;
+
+    /** The contents of the squares parsed, by index. */
+    private final Piece[] _contents = new Piece[NUM_SQUARES];
+    /** The text being parsed. */
+    private CharSequence _text;
+    /** Position in _text of the next character to parse. */
+    private int _pos;
+    /** End of the text to parse in _text. */
+    private int _end;
+}
@@ -0,0 +1,155 @@
+package tablut;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ucb.util.CommandArgs;
+
+import static tablut.Utils.*;
+
+/** Move-generation counter ("perft") for Tablut.  Counts the leaf
+ *  positions of the full game tree to a fixed depth using
+ *  Board.legalMoves, Board.makeMove and Board.undo, so that changes to the
+ *  representation of Board can be checked against known counts and timed.
+ *  Positions in which the game is over are not expanded further.
+ *  @author Vineet Vashist
+ */
+class Perft {
+
+    /** Return the number of positions exactly DEPTH moves from the current
+     *  position of BOARD.  BOARD is restored to its original position on
+     *  return. */
+    static long perft(Board board, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (board.winner() != null) {
+            return 0;
+        }
+        long total = 0;
+        for (Move m : board.legalMoves(board.turn())) {
+            total += perftMove(board, m, depth);
+        }
+        return total;
+    }
+
+    /** Return the number of positions DEPTH-1 moves after making MOVE on
+     *  BOARD, which is restored on return. */
+    private static long perftMove(Board board, Move move, int depth) {
+        int count = board.moveCount();
+        board.makeMove(move);
+        if (board.moveCount() == count) {
+            return 0;
+        }
+        long result = perft(board, depth - 1);
+        board.undo();
+        return result;
+    }
+
+    /** Return the perft count to DEPTH of each legal move in the current
+     *  position of BOARD, in move-generation order.  The values sum to
+     *  perft(BOARD, DEPTH). */
+    static Map<Move, Long> divide(Board board, int depth) {
+        LinkedHashMap<Move, Long> result = new LinkedHashMap<>();
+        if (depth == 0 || board.winner() != null) {
+            return result;
+        }
+        for (Move m : board.legalMoves(board.turn())) {
+            result.put(m, perftMove(board, m, depth));
+        }
+        return result;
+    }
+
+    /** As for divide(BOARD, DEPTH), but splitting the root moves among
+     *  THREADS worker threads, each playing on its own copy of BOARD. */
+    static Map<Move, Long> divide(Board board, int depth, int threads) {
+        LinkedHashMap<Move, Long> result = new LinkedHashMap<>();
+        if (depth == 0 || board.winner() != null) {
+            return result;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Move> moves = board.legalMoves(board.turn());
+            List<Future<Long>> counts = new ArrayList<>();
+            for (Move m : moves) {
+                Board copy = board.detachedCopy();
+                counts.add(pool.submit(() -> perftMove(copy, m, depth)));
+            }
+            for (int i = 0; i < moves.size(); i += 1) {
+                result.put(moves.get(i), counts.get(i).get());
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("perft interrupted");
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException(excp.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return result;
+    }
+
+    /** Return perft(BOARD, DEPTH), computed with THREADS worker threads. */
+    static long perft(Board board, int depth, int threads) {
+        if (depth == 0) {
+            return 1;
+        }
+        long total = 0;
+        for (long n : divide(board, depth, threads).values()) {
+            total += n;
+        }
+        return total;
+    }
+
+    /** Run perft from the initial position.  ARGS are the depth, and
+     *  optionally --divide to print the count for each root move and
+     *  --threads=N to use N worker threads. */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--divide --threads={0,1} --={1}", args);
+        if (!options.ok()) {
+            fatal("Usage: java tablut.Perft [--divide] [--threads=N]"
+                  + " DEPTH%n");
+        }
+        int depth = 0, threads = 1;
+        try {
+            depth = Integer.parseInt(options.getFirst("--"));
+            if (options.contains("--threads")) {
+                threads = Integer.parseInt(options.getFirst("--threads"));
+            }
+        } catch (NumberFormatException excp) {
+            fatal("Bad number: %s%n", excp.getMessage());
+        }
+        if (depth < 0 || threads < 1) {
+            fatal("Depth must be >= 0 and thread count >= 1.%n");
+        }
+
+        Board board = new Board();
+        long start = System.nanoTime();
+        Map<Move, Long> counts;
+        if (threads > 1) {
+            counts = divide(board, depth, threads);
+        } else {
+            counts = divide(board, depth);
+        }
+        long total = depth == 0 ? 1 : 0;
+        for (Map.Entry<Move, Long> entry : counts.entrySet()) {
+            if (options.contains("--divide")) {
+                System.out.printf("%s: %d%n", entry.getKey(), entry.getValue());
+            }
+            total += entry.getValue();
+        }
+        double secs = Math.max(System.nanoTime() - start, 1) * 1e-9;
+        System.out.printf("perft(%d) = %d  (%.3f s, %.0f positions/s,"
+                          + " %d thread%s)%n",
+                          depth, total, secs, total / secs, threads,
+                          threads == 1 ? "" : "s");
+    }
+
+}
@@ -39,6 +39,84 @@ abstract class Player {
      *  is not null. */
     abstract String myMove();
 
+    /** Ask me to finish choosing my move as soon as I can, if I am
+     *  choosing one.  May be called from any thread.  By default, does
+     *  nothing. */
+    void stop() {
+    }
+
+    /** Withdraw a request made by stop() that I have not yet acted on, so
+     *  that it does not cut short my next choice of move.  By default,
+     *  does nothing. */
+    void clearStop() {
+    }
+
+    /** Return true iff pollCommand can deliver commands (such as from a
+     *  menu) while another player is choosing a move.  By default,
+     *  false. */
+    boolean pollsCommands() {
+        return false;
+    }
+
+    /** Return the next command given to me while another player chooses
+     *  a move, waiting up to MILLIS milliseconds for one, or null if there
+     *  is none.  By default, returns null. */
+    String pollCommand(long millis) {
+        return null;
+    }
+
+    /** Return my next action, as for myMove, but with a move as a Move
+     *  rather than as text, so that a Controller need not parse it.
+     *  Returns null if I have nothing more to do (as for the end of
+     *  input).  By default, returns myMove() as a command. */
+    Action myAction() {
+        String command = myMove();
+        return command == null ? null : Action.command(command);
+    }
+
+    /** What a Player does on its turn: either a move, or a command (which
+     *  may be invalid) for its Controller. */
+    static final class Action {
+
+        /** An action that is MOVE if COMMAND is null, and otherwise
+         *  COMMAND. */
+        private Action(Move move, String command) {
+            _move = move;
+            _command = command;
+        }
+
+        /** Return the action of making MOVE, which must be legal. */
+        static Action move(Move move) {
+            return new Action(move, null);
+        }
+
+        /** Return the action of executing COMMAND, which may be a move in
+         *  text form. */
+        static Action command(String command) {
+            return new Action(null, command);
+        }
+
+        /** Return my move, or null if I am a command. */
+        Move move() {
+            return _move;
+        }
+
+        /** Return my command, or null if I am a move. */
+        String command() {
+            return _command;
+        }
+
+        @Override
+        public String toString() {
+            return _command == null ? String.valueOf(_move) : _command;
+        }
+
+        /** My move, if I am not a command. */
+        private final Move _move;
+        /** My command, or null. */
+        private final String _command;
+    }
+
     /** My Controller. */
     protected Controller _controller;
     /** The Piece I play (WHITE or BLACK). */
@@ -0,0 +1,149 @@
+package tablut;
+
+/** A sequential probability ratio test of the Elo difference between two
+ *  engines, fed one game result at a time.  Since a game of Tablut always
+ *  has a winner, each game is a Bernoulli trial in which the first engine
+ *  wins with probability 1 / (1 + 10^(-ELO/400)).  The test weighs the
+ *  hypothesis H0, that the first engine's advantage is ELO0, against H1,
+ *  that it is ELO1, and stops as soon as the log-likelihood ratio crosses
+ *  a bound set by the permitted error rates.
+ *  @author Vineet Vashist
+ */
+class SPRT {
+
+    /** Values of status(). */
+    static final int UNDECIDED = 0, ACCEPT_H0 = -1, ACCEPT_H1 = 1;
+
+    /** A test of H0: Elo difference ELO0 against H1: Elo difference ELO1,
+     *  where ELO0 < ELO1, accepting H1 wrongly with probability at most
+     *  ALPHA and H0 wrongly with probability at most BETA. */
+    SPRT(double elo0, double elo1, double alpha, double beta) {
+        if (elo0 >= elo1 || alpha <= 0 || alpha >= 1
+            || beta <= 0 || beta >= 1) {
+            throw new IllegalArgumentException("bad SPRT parameters");
+        }
+        _elo0 = elo0;
+        _elo1 = elo1;
+        double p0 = winProbability(elo0), p1 = winProbability(elo1);
+        _winWeight = Math.log(p1 / p0);
+        _lossWeight = Math.log((1 - p1) / (1 - p0));
+        _lower = Math.log(beta / (1 - alpha));
+        _upper = Math.log((1 - beta) / alpha);
+    }
+
+    /** Record a game won by the first engine iff FIRSTWON. */
+    void add(boolean firstWon) {
+        if (firstWon) {
+            _wins += 1;
+        } else {
+            _losses += 1;
+        }
+    }
+
+    /** Return UNDECIDED, ACCEPT_H0 or ACCEPT_H1 according to the games so
+     *  far. */
+    int status() {
+        double llr = llr();
+        return llr >= _upper ? ACCEPT_H1
+            : llr <= _lower ? ACCEPT_H0
+            : UNDECIDED;
+    }
+
+    /** Return the log-likelihood ratio of H1 to H0 given the games so
+     *  far. */
+    double llr() {
+        return _wins * _winWeight + _losses * _lossWeight;
+    }
+
+    /** Return the bound on llr() below which H0 is accepted. */
+    double lowerBound() {
+        return _lower;
+    }
+
+    /** Return the bound on llr() above which H1 is accepted. */
+    double upperBound() {
+        return _upper;
+    }
+
+    /** Return the number of games recorded. */
+    int games() {
+        return _wins + _losses;
+    }
+
+    /** Return the number of games won by the first engine. */
+    int wins() {
+        return _wins;
+    }
+
+    /** Return the estimated Elo advantage of the first engine. */
+    double elo() {
+        return elo(score());
+    }
+
+    /** Return the lower end of the 95% confidence interval of elo(). */
+    double eloLow() {
+        return elo(score() - Z95 * stdError());
+    }
+
+    /** Return the upper end of the 95% confidence interval of elo(). */
+    double eloHigh() {
+        return elo(score() + Z95 * stdError());
+    }
+
+    @Override
+    public String toString() {
+        String verdict;
+        switch (status()) {
+        case ACCEPT_H1:
+            verdict = String.format("H1 (elo >= %.1f) accepted", _elo1);
+            break;
+        case ACCEPT_H0:
+            verdict = String.format("H0 (elo <= %.1f) accepted", _elo0);
+            break;
+        default:
+            verdict = "undecided";
+            break;
+        }
+        return String.format("%d games (%d-%d), elo %.1f [%.1f, %.1f],"
+                             + " LLR %.3f [%.3f, %.3f]: %s",
+                             games(), _wins, _losses, elo(), eloLow(),
+                             eloHigh(), llr(), _lower, _upper, verdict);
+    }
+
+    /** Return the probability of a win given an Elo difference ELO. */
+    static double winProbability(double elo) {
+        return 1.0 / (1.0 + Math.pow(10.0, -elo / 400.0));
+    }
+
+    /** Return the Elo difference corresponding to winning with probability
+     *  P, limited to keep the result finite for P near 0 or 1. */
+    private double elo(double p) {
+        double eps = 0.5 / Math.max(games(), 1);
+        p = Math.min(Math.max(p, eps), 1 - eps);
+        return -400.0 * Math.log10(1.0 / p - 1.0);
+    }
+
+    /** Return the proportion of games won by the first engine (1/2 if
+     *  there are no games). */
+    private double score() {
+        return games() == 0 ? 0.5 : (double) _wins / games();
+    }
+
+    /** Return the standard error of score(). */
+    private double stdError() {
+        double p = score();
+        return Math.sqrt(p * (1 - p) / Math.max(games(), 1));
+    }
+
+    /** Two-sided 95% quantile of the standard normal distribution. */
+    private static final double Z95 = 1.959964;
+
+    /** The Elo differences of the two hypotheses. */
+    private final double _elo0, _elo1;
+    /** Change in llr() for a win and for a loss. */
+    private final double _winWeight, _lossWeight;
+    /** Bounds on llr() for accepting H0 and H1. */
+    private final double _lower, _upper;
+    /** Games won and lost by the first engine. */
+    private int _wins, _losses;
+}
@@ -0,0 +1,400 @@
+package tablut;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static tablut.Piece.*;
+import static tablut.Utils.error;
+
+/** A server of games of Tablut to clients on a local socket.  Each
+ *  connection is a session with its own Board (and, if asked for, its own
+ *  engine), run on its own thread: a virtual thread if the JVM has them,
+ *  so that thousands of sessions may be open at once.  The client sends
+ *  commands, one per line:
+ *  <pre>
+ *      new                 start a new game
+ *      e5-7, etc.          make a move for the side to move
+ *      undo                undo the last move (and the engine's reply)
+ *      limit N             set the move limit to N moves per side
+ *      auto white|black    have the engine play the given side
+ *      manual white|black  have the client play the given side
+ *      dump                show the board
+ *      quit                end the session
+ *  </pre>
+ *  The server greets the client with GREETING, and answers each command
+ *  with lines for any moves made by the engine ("move e5-7"), the winner
+ *  if the game has just ended ("winner White"), and the board for "dump",
+ *  followed by "ok" or, if the command was not valid, "error: " and the
+ *  reason.  A client that closes its connection, or whose connection
+ *  fails, abandons its session: its engine stops any search at once,
+ *  and the commands not yet executed are dropped.
+ *  @author Vineet Vashist
+ */
+class Server implements Closeable {
+
+    /** The first line sent to each client. */
+    static final String GREETING = "tablut ready";
+
+    /** A server listening on ADDRESS, which is either a port number on the
+     *  loopback interface (0 for any free port) or the path of a
+     *  Unix-domain socket to create, whose engines search DEPTH
+     *  levels. */
+    Server(String address, int depth) throws IOException {
+        if (address.matches("\\d+")) {
+            _path = null;
+            _channel = ServerSocketChannel.open(StandardProtocolFamily.INET);
+            _channel.bind(new InetSocketAddress(InetAddress
+                                                .getLoopbackAddress(),
+                                                Integer.parseInt(address)));
+        } else {
+            _path = Path.of(address);
+            _channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            _channel.bind(UnixDomainSocketAddress.of(_path));
+        }
+        _depth = depth;
+        _sessions = sessionExecutor();
+    }
+
+    /** Return the address on which I am listening. */
+    SocketAddress address() throws IOException {
+        return _channel.getLocalAddress();
+    }
+
+    /** Return the number of sessions currently open. */
+    int activeSessions() {
+        return _active.get();
+    }
+
+    /** Accept clients and start a session for each until closed. */
+    void serve() throws IOException {
+        try {
+            while (true) {
+                _sessions.execute(new Session(_channel.accept()));
+            }
+        } catch (ClosedChannelException excp) {
+            return;
+        }
+    }
+
+    /** Stop accepting clients, end all sessions, and remove my socket
+     *  file, if any. */
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+        _sessions.shutdownNow();
+        if (_path != null) {
+            Files.deleteIfExists(_path);
+        }
+    }
+
+    /** Return a channel that reads from CLIENT.  A stream made directly
+     *  from CLIENT would hold its blocking lock while waiting to read, and
+     *  so keep its session from writing meanwhile; a stream made from
+     *  this channel does not. */
+    private static ReadableByteChannel readable(SocketChannel client) {
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer buffer) throws IOException {
+                return client.read(buffer);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return client.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                client.close();
+            }
+        };
+    }
+
+    /** Return an executor that runs each task on a new virtual thread if
+     *  this JVM supports them, and otherwise on a pooled daemon
+     *  thread. */
+    private static ExecutorService sessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException excp) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "tablut-session");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** One client's game.  Apart from its buffers, a session holds little
+     *  more than a Board, whose undo records are a few ints per move. */
+    private class Session implements Runnable {
+
+        /** A session with CLIENT. */
+        Session(SocketChannel client) {
+            _client = client;
+        }
+
+        @Override
+        public void run() {
+            _active.incrementAndGet();
+            startGame();
+            try (SocketChannel client = _client) {
+                _out = new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(Channels.newOutputStream(client),
+                                           UTF_8), BUFFER_SIZE));
+                _out.println(GREETING);
+                _out.flush();
+                BlockingQueue<String> lines =
+                    new ArrayBlockingQueue<>(MAX_PENDING);
+                _sessions.execute(() -> read(client, lines));
+                while (!_done && !_closed) {
+                    String line = lines.take();
+                    if (line == END_OF_INPUT) {
+                        break;
+                    }
+                    try {
+                        execute(line.trim().toLowerCase());
+                        _out.println("ok");
+                    } catch (IllegalArgumentException excp) {
+                        _out.println("error: " + excp.getMessage());
+                    }
+                    _out.flush();
+                }
+            } catch (IOException excp) {
+                /* The client has gone away. */
+                return;
+            } catch (InterruptedException excp) {
+                /* The server is closing. */
+                return;
+            } finally {
+                _closed = true;
+                endGame();
+                _active.decrementAndGet();
+            }
+        }
+
+        /** Read the client's commands from CLIENT into LINES, followed by
+         *  END_OF_INPUT, while the session executes them, until the session
+         *  is closed.  When the client goes away, close the session and stop
+         *  the engine's search, if any, since nobody is left to receive its
+         *  move. */
+        private void read(SocketChannel client, BlockingQueue<String> lines) {
+            BufferedReader in =
+                new BufferedReader(new InputStreamReader(
+                    Channels.newInputStream(readable(client)), UTF_8),
+                                   BUFFER_SIZE);
+            try {
+                for (String line = in.readLine(); line != null && !_closed;
+                     line = in.readLine()) {
+                    while (!lines.offer(line, OFFER_WAIT,
+                                        TimeUnit.MILLISECONDS)) {
+                        if (_closed) {
+                            return;
+                        }
+                    }
+                }
+            } catch (IOException | InterruptedException excp) {
+                /* The client has gone away, or the server is closing. */
+            }
+            _closed = true;
+            AI engine = _engine;
+            if (engine != null) {
+                engine.stop();
+            }
+            lines.offer(END_OF_INPUT);
+        }
+
+        /** Execute the command CMND, which is trimmed and in lower case,
+         *  raising an IllegalArgumentException if it is not valid. */
+        private void execute(String cmnd) {
+            if (cmnd.isEmpty()) {
+                return;
+            }
+            if (Move.isGrammaticalMove(cmnd)) {
+                clientMove(Move.mv(cmnd));
+                return;
+            }
+            int split = cmnd.indexOf(' ');
+            String word = split < 0 ? cmnd : cmnd.substring(0, split),
+                arg = split < 0 ? "" : cmnd.substring(split + 1).trim();
+            switch (word) {
+            case "new":
+                endGame();
+                _board.init();
+                startGame();
+                engineMove();
+                break;
+            case "undo":
+                _board.undo();
+                if (_board.turn() == _engineSide) {
+                    _board.undo();
+                }
+                break;
+            case "limit":
+                try {
+                    _board.setMoveLimit(Integer.parseInt(arg));
+                } catch (NumberFormatException excp) {
+                    throw error("bad number: %s", arg);
+                }
+                break;
+            case "auto":
+                _engineSide = side(arg);
+                if (_engine == null) {
+                    _engine = new AI(_depth);
+                }
+                engineMove();
+                break;
+            case "manual":
+                if (side(arg) == _engineSide) {
+                    _engineSide = null;
+                }
+                break;
+            case "dump":
+                _out.printf("===%n%s===%n", _board);
+                break;
+            case "quit":
+                _done = true;
+                break;
+            default:
+                throw error("bad command: %s", cmnd);
+            }
+        }
+
+        /** Make MOVE for the client, and then the engine's reply, if it
+         *  is the engine's turn. */
+        private void clientMove(Move move) {
+            if (_board.winner() != null) {
+                throw error("game is over");
+            }
+            if (move == null || !_board.isLegal(move)) {
+                throw error("illegal move");
+            }
+            makeMove(move);
+            engineMove();
+        }
+
+        /** Make a move for the engine if it is its turn. */
+        private void engineMove() {
+            if (_board.turn() == _engineSide && _board.winner() == null) {
+                Move move = _engine.findMove(_board);
+                if (move != null) {
+                    makeMove(move);
+                    _out.println("move " + move);
+                }
+            }
+        }
+
+        /** Make MOVE, and report the winner if it ends the game. */
+        private void makeMove(Move move) {
+            int moveCount = _board.moveCount();
+            _board.makeMove(move);
+            if (_board.moveCount() == moveCount) {
+                throw error("move limit reached");
+            }
+            Metrics.MOVES.inc();
+            if (_board.winner() != null) {
+                _out.println("winner " + _board.winner().toName());
+                endGame();
+            }
+        }
+
+        /** Record the start of a game in the program's metrics. */
+        private void startGame() {
+            _playing = true;
+            Metrics.GAMES_IN_PROGRESS.inc();
+        }
+
+        /** Record the end (by a win or abandonment) of the game being
+         *  played, if any, in the program's metrics. */
+        private void endGame() {
+            if (_playing) {
+                _playing = false;
+                Metrics.GAMES_IN_PROGRESS.dec();
+                Metrics.GAMES.inc();
+                Metrics.UNDO_DEPTH.observe(_board.undoDepth());
+            }
+        }
+
+        /** Return the side named NAME. */
+        private Piece side(String name) {
+            switch (name) {
+            case "white":
+                return WHITE;
+            case "black":
+                return BLACK;
+            default:
+                throw error("bad side: %s", name);
+            }
+        }
+
+        /** The connection to the client. */
+        private final SocketChannel _client;
+        /** Output to the client. */
+        private PrintWriter _out;
+        /** The position. */
+        private final Board _board = new Board();
+        /** The engine, once created.  Read by the thread running read,
+         *  which stops it when the client goes away. */
+        private volatile AI _engine;
+        /** The side played by _engine, or null if none. */
+        private Piece _engineSide;
+        /** True once the client has quit. */
+        private boolean _done;
+        /** True once the session is over or its client has gone away. */
+        private volatile boolean _closed;
+        /** True while a game is in progress (see startGame). */
+        private boolean _playing;
+    }
+
+    /** Size of each session's input and output buffers, in characters.
+     *  Commands and replies are short. */
+    private static final int BUFFER_SIZE = 512;
+
+    /** Most commands read ahead of the one being executed in a session,
+     *  so that a client that floods the server is held back. */
+    private static final int MAX_PENDING = 16;
+
+    /** Milliseconds for which a session's reader waits to hand over a
+     *  command before checking whether the session is over. */
+    private static final long OFFER_WAIT = 100;
+
+    /** Marks the end of a client's commands. */
+    private static final String END_OF_INPUT = new String("end of input");
+
+    /** The socket on which clients connect. */
+    private final ServerSocketChannel _channel;
+    /** The path of my Unix-domain socket, or null for TCP. */
+    private final Path _path;
+    /** Depth searched by engines. */
+    private final int _depth;
+    /** Runs the sessions. */
+    private final ExecutorService _sessions;
+    /** Number of open sessions. */
+    private final AtomicInteger _active = new AtomicInteger();
+}
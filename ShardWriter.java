@@ -0,0 +1,177 @@
+package tablut;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static tablut.Piece.*;
+import static tablut.Square.*;
+
+/** A writer of labeled positions into binary shards of at most a fixed
+ *  number of records each, named PREFIX-00000.bin, PREFIX-00001.bin, ...,
+ *  with a text index PREFIX.idx listing, after a header line, each shard's
+ *  file name, number of records, and first and last game numbers.
+ *
+ *  Every record is RECORD_SIZE bytes: the contents of the 81 squares in
+ *  order of index, 2 bits each (the Piece ordinal, first square in the low
+ *  bits of the first byte), in 21 bytes; a byte holding the side to move
+ *  (bit 0: 1 for white) and the winner of the game (bits 1-2: its Piece
+ *  ordinal); the move number as a 2-byte integer; the search score
+ *  (favoring white) as a 4-byte integer; and the game number as a 4-byte
+ *  integer.  Multi-byte integers are big-endian.
+ *
+ *  Records are gathered in a large buffer and written through a
+ *  FileChannel.
+ *  @author Vineet Vashist
+ */
+class ShardWriter implements Closeable {
+
+    /** Size of a record in bytes. */
+    static final int RECORD_SIZE = 32;
+    /** Offsets of the fields of a record after the squares. */
+    static final int FLAGS = 21, MOVE = 22, SCORE = 24, GAME = 28;
+
+    /** A writer of shards of RECORDSPERSHARD records each, whose names
+     *  start with PREFIX. */
+    ShardWriter(String prefix, int recordsPerShard) throws IOException {
+        if (recordsPerShard < 1) {
+            throw new IllegalArgumentException("bad shard size");
+        }
+        _prefix = prefix;
+        _recordsPerShard = recordsPerShard;
+        _index = new PrintWriter(Files.newBufferedWriter(
+            Path.of(prefix + ".idx")));
+        _index.printf("# tablut positions: %d-byte records, %d per shard%n",
+                      RECORD_SIZE, recordsPerShard);
+    }
+
+    /** Add the position on BOARD from game number GAME, whose search
+     *  score was SCORE, and which was eventually won by WINNER. */
+    void write(Board board, int score, Piece winner, int game)
+        throws IOException {
+        if (_channel == null) {
+            openShard(game);
+        }
+        if (_buffer.remaining() < RECORD_SIZE) {
+            drain();
+        }
+        int bits = 0, shift = 0;
+        for (int i = 0; i < NUM_SQUARES; i += 1) {
+            Square s = sq(i);
+            bits |= board.get(s.col(), s.row()).ordinal() << shift;
+            shift += 2;
+            if (shift == 8) {
+                _buffer.put((byte) bits);
+                bits = shift = 0;
+            }
+        }
+        _buffer.put((byte) bits);
+        _buffer.put((byte) ((board.turn() == WHITE ? 1 : 0)
+                            | winner.ordinal() << 1));
+        _buffer.putShort((short) board.moveCount());
+        _buffer.putInt(score);
+        _buffer.putInt(game);
+        _records += 1;
+        _lastGame = game;
+        if (_records == _recordsPerShard) {
+            closeShard();
+        }
+    }
+
+    /** Return the total number of records written. */
+    long records() {
+        return _total + _records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_channel != null) {
+            closeShard();
+        }
+        _index.close();
+        if (_index.checkError()) {
+            throw new IOException("could not write shard index");
+        }
+    }
+
+    /** Set BOARD to the position in the record starting at the current
+     *  position of RECORD, and advance RECORD past it.  Returns the game
+     *  number of the record.  For reading shards back. */
+    static int readPosition(ByteBuffer record, Board board) {
+        Piece[] contents = new Piece[NUM_SQUARES];
+        Piece[] pieces = Piece.values();
+        int bits = 0;
+        for (int i = 0; i < NUM_SQUARES; i += 1) {
+            if (i % 4 == 0) {
+                bits = record.get() & 0xFF;
+            }
+            contents[i] = pieces[bits & 3];
+            bits >>>= 2;
+        }
+        int flags = record.get();
+        int move = record.getShort();
+        record.getInt();
+        int game = record.getInt();
+        board.setPosition(contents, (flags & 1) == 1 ? WHITE : BLACK, move,
+                          -1);
+        return game;
+    }
+
+    /** Start a new shard, beginning with game number GAME. */
+    private void openShard(int game) throws IOException {
+        _name = String.format("%s-%05d.bin", _prefix, _shards);
+        _channel = FileChannel.open(Path.of(_name),
+                                    StandardOpenOption.CREATE,
+                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                    StandardOpenOption.WRITE);
+        _shards += 1;
+        _firstGame = game;
+    }
+
+    /** Finish the current shard and record it in the index. */
+    private void closeShard() throws IOException {
+        drain();
+        _channel.close();
+        _channel = null;
+        _index.printf("%s %d %d %d%n", Path.of(_name).getFileName(),
+                      _records, _firstGame, _lastGame);
+        _total += _records;
+        _records = 0;
+    }
+
+    /** Write out the contents of _buffer to the current shard. */
+    private void drain() throws IOException {
+        _buffer.flip();
+        while (_buffer.hasRemaining()) {
+            _channel.write(_buffer);
+        }
+        _buffer.clear();
+    }
+
+    /** Size of the output buffer in bytes: a whole number of records. */
+    private static final int BUFFER_SIZE = RECORD_SIZE << 15;
+
+    /** Start of the names of shards and the index. */
+    private final String _prefix;
+    /** Maximum number of records in a shard. */
+    private final int _recordsPerShard;
+    /** The index file. */
+    private final PrintWriter _index;
+    /** Records waiting to be written. */
+    private final ByteBuffer _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    /** The current shard, or null if none is open. */
+    private FileChannel _channel;
+    /** Name of the current shard. */
+    private String _name;
+    /** Number of shards started. */
+    private int _shards;
+    /** Number of records in the current shard and in earlier shards. */
+    private long _records, _total;
+    /** First and last games in the current shard. */
+    private int _firstGame, _lastGame;
+}
@@ -123,6 +123,23 @@ final class Square {
         return Math.abs(_col - other._col) + Math.abs(_row - other._row) == 1;
     }
 
+    /** Return the square to which symmetry number SYM carries me (see
+     *  NUM_SYMMETRIES). */
+    Square symmetric(int sym) {
+        return SQUARES[SYMMETRIC[sym][_index]];
+    }
+
+    /** Return the index of the square to which symmetry number SYM
+     *  carries the square with index INDEX. */
+    static int symmetric(int sym, int index) {
+        return SYMMETRIC[sym][index];
+    }
+
+    /** Return the number of the symmetry that undoes symmetry SYM. */
+    static int inverseSymmetry(int sym) {
+        return (sym & REFLECTION) != 0 ? sym : (4 - sym) & 3;
+    }
+
     @Override
     public String toString() {
         return _str;
@@ -233,6 +250,36 @@ final class Square {
         }
     }
 
+    /** The number of symmetries of the board: the rotations about the
+     *  center by 0, 90, 180 and 270 degrees counterclockwise (symmetries
+     *  0-3, of which 0 is the identity), each preceded by a reflection
+     *  left to right if REFLECTION is added to its number (4-7). */
+    static final int NUM_SYMMETRIES = 8;
+
+    /** The part of a symmetry number denoting a reflection. */
+    static final int REFLECTION = 4;
+
+    /** SYMMETRIC[s][i] is the index of the square to which symmetry s
+     *  carries the square with index i. */
+    private static final int[][] SYMMETRIC =
+        new int[NUM_SYMMETRIES][NUM_SQUARES];
+
+    static {
+        int last = BOARD_SIZE - 1;
+        for (int s = 0; s < NUM_SYMMETRIES; s += 1) {
+            for (Square sq : SQUARES) {
+                int c = (s & REFLECTION) != 0 ? last - sq.col() : sq.col(),
+                    r = sq.row();
+                for (int k = 0; k < (s & 3); k += 1) {
+                    int t = c;
+                    c = last - r;
+                    r = t;
+                }
+                SYMMETRIC[s][sq.index()] = r * BOARD_SIZE + c;
+            }
+        }
+    }
+
     /** My index position. */
     private final int _index;
 
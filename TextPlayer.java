@@ -29,12 +29,32 @@ class TextPlayer extends Player {
         return true;
     }
 
+    @Override
+    boolean pollsCommands() {
+        return true;
+    }
+
+    /** Return "stop" if that is the next line of input, arriving within
+     *  MILLIS milliseconds, and otherwise null.  Any other line typed
+     *  while another player chooses a move (such as my own move, typed
+     *  ahead, or the rest of a script) is left to be read in its turn. */
+    @Override
+    String pollCommand(long millis) {
+        return _controller.pollLine(millis,
+                                    line -> line.equalsIgnoreCase("stop"));
+    }
+
     @Override
     String myMove() {
+        return myAction().toString();
+    }
+
+    @Override
+    Action myAction() {
         while (true) {
             String line = _controller.readLine(true);
             if (line == null) {
-                return "quit";
+                return Action.command("quit");
             } else if (Move.isGrammaticalMove(line)) {
                 if (board().winner() != null || board().turn() != myPiece()) {
                     _controller.reportError("misplaced move");
@@ -46,9 +66,10 @@ class TextPlayer extends Player {
                                                 + "Please try again.");
                         continue;
                     }
+                    return Action.move(move);
                 }
             }
-            return line;
+            return Action.command(line);
         }
     }
 }
@@ -0,0 +1,68 @@
+package tablut;
+
+/** The division of an engine's remaining time among its moves.  For one
+ *  move, a TimeManager sets a target time, which the engine should
+ *  usually not exceed, and a maximum, at which its search is stopped.
+ *  The target is the remaining time shared among the moves the engine
+ *  expects still to make, which are fewer as the game goes on, plus most
+ *  of the increment.  The engine deepens its search one level at a time
+ *  (see AI.findMove), and asks before each level whether to go on; it
+ *  stops once half the target has passed, since the next level would
+ *  probably take longer than all of the earlier ones together, but it
+ *  allows itself more time when its choice of move has just changed and
+ *  so is unsettled.
+ *  @author Vineet Vashist
+ */
+final class TimeManager {
+
+    /** A manager for a move when REMAINING nanoseconds are left on the
+     *  engine's clock, it gains INCREMENT per move, and PLY moves have
+     *  been made in the game. */
+    TimeManager(long remaining, long increment, int ply) {
+        long usable = Math.max(0, remaining - OVERHEAD);
+        int movesToGo = Math.max(MIN_MOVES_TO_GO, EXPECTED_MOVES - ply / 2);
+        long limit = usable / MAX_SHARE;
+        _target = Math.min(usable / movesToGo + increment / 4 * 3, limit);
+        _maximum = Math.min(_target * MAX_FACTOR, limit);
+    }
+
+    /** Return the time the engine should aim to spend on the move. */
+    long target() {
+        return _target;
+    }
+
+    /** Return the most time the engine may spend on the move. */
+    long maximum() {
+        return _maximum;
+    }
+
+    /** Return true iff the engine, having spent ELAPSED nanoseconds on
+     *  the move so far, should search another level.  UNSTABLE indicates
+     *  that the best move changed in the last level searched. */
+    boolean another(long elapsed, boolean unstable) {
+        long target =
+            unstable ? Math.min(_target * UNSTABLE_FACTOR, _maximum)
+            : _target;
+        return elapsed < target / 2;
+    }
+
+    /** Time kept in reserve for the work of making and reporting moves,
+     *  which the engine does not count. */
+    static final long OVERHEAD = 50_000_000L;
+
+    /** Number of moves that the engine expects to make in a game. */
+    private static final int EXPECTED_MOVES = 50;
+    /** Fewest moves for which the engine keeps time in hand. */
+    private static final int MIN_MOVES_TO_GO = 15;
+    /** The maximum is at most this multiple of the target. */
+    private static final int MAX_FACTOR = 4;
+    /** No move may take more than 1 / MAX_SHARE of the usable time. */
+    private static final int MAX_SHARE = 3;
+    /** Factor by which an unstable choice of move extends the target. */
+    private static final int UNSTABLE_FACTOR = 2;
+
+    /** Target time. */
+    private final long _target;
+    /** Maximum time. */
+    private final long _maximum;
+}
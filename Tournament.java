@@ -0,0 +1,430 @@
+package tablut;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+import ucb.util.CommandArgs;
+
+import static tablut.Piece.*;
+import static tablut.Utils.*;
+
+/** A headless match between two engines, playing many games at once on a
+ *  pool of threads.  Each game has its own Controller (and therefore its
+ *  own Board and random-number generator), seeded from the match seed and
+ *  the game number so that each game can be replayed exactly.  The engines
+ *  swap colors from one game to the next.  A match may be stopped early by
+ *  a sequential probability ratio test (see SPRT) once the difference in
+ *  strength between the engines is clear.
+ *  @author Vineet Vashist
+ */
+class Tournament {
+
+    /** A match between engines made from the templates FIRST and SECOND.
+     *  Each game starts with RANDOMPLIES random moves, chosen with a
+     *  generator seeded from SEED and the game number.  If MOVETIME > 0,
+     *  each search is stopped a little before MOVETIME milliseconds, and a
+     *  side that nevertheless takes longer than that over a move loses.
+     *  A side that must move after making MOVELIMIT moves loses. */
+    Tournament(AI first, AI second, int randomPlies, long seed,
+               long moveTime, int moveLimit) {
+        _engines = new AI[] { first, second };
+        _randomPlies = randomPlies;
+        _seed = seed;
+        _moveTime = moveTime * 1_000_000L;
+        _moveLimit = moveLimit;
+    }
+
+    /** Time each game, giving each side BASE milliseconds plus INCREMENT
+     *  per move, which each engine divides among its moves with a
+     *  TimeManager.  A side that runs out of time loses. */
+    void setClock(long base, long increment) {
+        _clockBase = base * 1_000_000L;
+        _clockIncrement = increment * 1_000_000L;
+    }
+
+    /** Return the outcome of game number INDEX of the match.  In even
+     *  games, the first engine plays white. */
+    GameResult playGame(int index) {
+        Controller control =
+            new Controller(new NullView(), null, QUIET, _engines[0],
+                           _engines[1], false);
+        control.setSeed(_seed + index);
+        Board board = control.board();
+        int whiteEngine = index % 2;
+        AI white = (AI) _engines[whiteEngine].create(WHITE, control),
+            black = (AI) _engines[1 - whiteEngine].create(BLACK, control);
+
+        Metrics.GAMES_IN_PROGRESS.inc();
+        try {
+            return playGame(index, control, whiteEngine, white, black);
+        } finally {
+            Metrics.GAMES_IN_PROGRESS.dec();
+            Metrics.GAMES.inc();
+            Metrics.UNDO_DEPTH.observe(board.undoDepth());
+        }
+    }
+
+    /** Return the outcome of game number INDEX of the match, played under
+     *  CONTROL by WHITE and BLACK, of which WHITE is engine WHITEENGINE. */
+    private GameResult playGame(int index, Controller control,
+                                int whiteEngine, AI white, AI black) {
+        Board board = control.board();
+        ArrayList<Move> opening = new ArrayList<>();
+        for (int k = 0; k < _randomPlies && board.winner() == null; k += 1) {
+            List<Move> moves = board.legalMoves(board.turn());
+            Move move = moves.get(control.randInt(moves.size()));
+            opening.add(move);
+            board.makeMove(move);
+            Metrics.MOVES.inc();
+        }
+
+        ArrayList<Move> record = new ArrayList<>();
+        ArrayList<Integer> millis = new ArrayList<>(),
+            scores = new ArrayList<>();
+        for (int k = 0; k < board.moveCount(); k += 1) {
+            millis.add(0);
+            scores.add(0);
+        }
+        record.addAll(opening);
+        long[] nanos = new long[2];
+        Clock clock = _clockBase == 0 ? null
+            : new Clock(_clockBase, _clockIncrement);
+        Piece winner = board.winner();
+        boolean forfeit = false;
+        while (winner == null) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IllegalStateException("game abandoned");
+            }
+            if (board.moveCount() >= 2 * _moveLimit) {
+                winner = board.turn().opponent();
+                break;
+            }
+            boolean whiteToMove = board.turn() == WHITE;
+            int engine = whiteToMove ? whiteEngine : 1 - whiteEngine;
+            long start = System.nanoTime();
+            AI player = whiteToMove ? white : black;
+            long deadline = _moveTime == 0 ? AI.NO_DEADLINE
+                : start + _moveTime
+                  - Math.min(_moveTime / 4, TimeManager.OVERHEAD);
+            TimeManager time = null;
+            if (clock != null) {
+                clock.start(board.turn());
+                time = new TimeManager(clock.remaining(board.turn()),
+                                       clock.increment(), board.moveCount());
+            }
+            Move move = player.findMove(board, deadline, time);
+            long elapsed = System.nanoTime() - start;
+            nanos[engine] += elapsed;
+            boolean inTime = clock == null || clock.press();
+            if (move == null || (_moveTime > 0 && elapsed > _moveTime)
+                || !inTime) {
+                winner = board.turn().opponent();
+                forfeit = true;
+                break;
+            }
+            record.add(move);
+            millis.add((int) (elapsed / 1_000_000L));
+            scores.add(player.score());
+            board.makeMove(move);
+            Metrics.MOVES.inc();
+            winner = board.winner();
+        }
+        int winningEngine =
+            winner == WHITE ? whiteEngine : 1 - whiteEngine;
+        return new GameResult(index, winner, winningEngine,
+                              board.moveCount(), nanos, forfeit, record,
+                              millis, scores);
+    }
+
+    /** Play up to GAMES games on THREADS threads, keeping every thread
+     *  busy, and pass each result to SINK as it completes.  Stop early,
+     *  abandoning the games in progress, when SINK returns false.  Returns
+     *  the number of results passed to SINK. */
+    int play(int games, int threads, Predicate<GameResult> sink) {
+        ExecutorService pool =
+            Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        CompletionService<GameResult> done =
+            new ExecutorCompletionService<>(pool);
+        try {
+            int submitted, received;
+            for (submitted = 0; submitted < Math.min(games, threads);
+                 submitted += 1) {
+                int index = submitted;
+                done.submit(() -> playGame(index));
+            }
+            for (received = 0; received < submitted; ) {
+                GameResult result = done.take().get();
+                received += 1;
+                if (!sink.test(result)) {
+                    break;
+                }
+                if (submitted < games) {
+                    int index = submitted;
+                    done.submit(() -> playGame(index));
+                    submitted += 1;
+                }
+            }
+            return received;
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("match interrupted");
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException(excp.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** The outcome of one game. */
+    static class GameResult {
+        /** The outcome of game number INDEX, won by WINNER, which was
+         *  played by engine number ENGINE (0 or 1), after MOVES moves
+         *  (plies), in which the engines spent NANOS[0] and NANOS[1]
+         *  nanoseconds thinking.  FORFEIT iff the loser lost on time.
+         *  RECORD lists the moves played, MILLIS the thinking time of
+         *  each, and SCORES the score its engine gave it (both 0 for
+         *  random opening moves). */
+        GameResult(int index, Piece winner, int engine, int moves,
+                   long[] nanos, boolean forfeit, List<Move> record,
+                   List<Integer> millis, List<Integer> scores) {
+            this.index = index;
+            this.winner = winner;
+            this.engine = engine;
+            this.moves = moves;
+            this.nanos = nanos;
+            this.forfeit = forfeit;
+            this.record = record;
+            this.millis = millis;
+            this.scores = scores;
+        }
+
+        /** Write this game to OUT, with scores and thinking times. */
+        void write(GameWriter out) throws IOException {
+            Board board = new Board();
+            out.startGame(true, true);
+            for (int k = 0; k < record.size(); k += 1) {
+                out.move(board, record.get(k), scores.get(k), millis.get(k));
+                board.makeMove(record.get(k));
+            }
+            out.endGame(winner);
+        }
+
+        /** Game number. */
+        final int index;
+        /** Winning side. */
+        final Piece winner;
+        /** Winning engine (0 or 1). */
+        final int engine;
+        /** Length of the game in plies. */
+        final int moves;
+        /** Thinking time of each engine in nanoseconds. */
+        final long[] nanos;
+        /** True iff the game was lost on time. */
+        final boolean forfeit;
+        /** The moves of the game. */
+        final List<Move> record;
+        /** Thinking time of each move in milliseconds. */
+        final List<Integer> millis;
+        /** Score of each move. */
+        final List<Integer> scores;
+    }
+
+    /** Play a match as directed by ARGS (see the usage message) and print
+     *  a summary of the results. */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--games={0,1} --threads={0,1} --depth1={0,1}"
+                            + " --depth2={0,1} --random={0,1} --seed={0,1}"
+                            + " --movetime={0,1} --limit={0,1} --verbose"
+                            + " --sprt --elo0={0,1} --elo1={0,1}"
+                            + " --alpha={0,1} --beta={0,1} --record={0,1}"
+                            + " --metrics={0,1} --time={0,1} --inc={0,1}",
+                            args);
+        if (!options.ok()) {
+            fatal("Usage: java tablut.Tournament [--games=N] [--threads=N]"
+                  + " [--depth1=D] [--depth2=D] [--random=PLIES]"
+                  + " [--seed=S] [--movetime=MSEC] [--time=MSEC"
+                  + " [--inc=MSEC]] [--limit=MOVES]"
+                  + " [--verbose] [--sprt [--elo0=E] [--elo1=E]"
+                  + " [--alpha=P] [--beta=P]] [--record=FILE]"
+                  + " [--metrics=PORT|FILE]%n");
+        }
+        int games = 0, threads = 0, depth1 = 0, depth2 = 0, random = 0,
+            limit = 0;
+        long seed = 0, moveTime = 0, time = 0, increment = 0;
+        SPRT sprt = null;
+        GameWriter recorder = null;
+        try {
+            games = Integer.parseInt(option(options, "--games", "100"));
+            threads = Integer.parseInt(option(options, "--threads",
+                Integer.toString(Runtime.getRuntime()
+                                 .availableProcessors())));
+            depth1 = Integer.parseInt(option(options, "--depth1",
+                Integer.toString(AI.DEFAULT_DEPTH)));
+            depth2 = Integer.parseInt(option(options, "--depth2",
+                Integer.toString(AI.DEFAULT_DEPTH)));
+            random = Integer.parseInt(option(options, "--random", "4"));
+            seed = Long.parseLong(option(options, "--seed", "0"));
+            moveTime = Long.parseLong(option(options, "--movetime", "0"));
+            time = Long.parseLong(option(options, "--time", "0"));
+            increment = Long.parseLong(option(options, "--inc", "0"));
+            limit = Integer.parseInt(option(options, "--limit", "200"));
+            if (options.contains("--sprt")) {
+                sprt = new SPRT(
+                    Double.parseDouble(option(options, "--elo0", "0")),
+                    Double.parseDouble(option(options, "--elo1", "10")),
+                    Double.parseDouble(option(options, "--alpha", "0.05")),
+                    Double.parseDouble(option(options, "--beta", "0.05")));
+            }
+        } catch (NumberFormatException excp) {
+            fatal("Bad number: %s%n", excp.getMessage());
+        } catch (IllegalArgumentException excp) {
+            fatal("%s%n", excp.getMessage());
+        }
+        if (options.contains("--record")) {
+            try {
+                recorder = new GameWriter(
+                    new FileOutputStream(options.getFirst("--record")));
+            } catch (IOException excp) {
+                fatal("Could not open record file: %s%n", excp.getMessage());
+            }
+        }
+        if (games < 1 || threads < 1 || depth1 < 0 || depth2 < 0
+            || random < 0 || moveTime < 0 || limit < 1 || time < 0
+            || increment < 0 || (increment > 0 && time == 0)) {
+            fatal("Option values out of range.%n");
+        }
+
+        Closeable metrics = null;
+        if (options.contains("--metrics")) {
+            try {
+                metrics =
+                    Metrics.REGISTRY.export(options.getFirst("--metrics"));
+            } catch (IOException | IllegalArgumentException excp) {
+                fatal("Could not export metrics: %s%n", excp.getMessage());
+            }
+        }
+
+        Tournament match = new Tournament(new AI(depth1), new AI(depth2),
+                                          random, seed, moveTime, limit);
+        match.setClock(time, increment);
+        long start = System.nanoTime();
+        List<GameResult> results = new ArrayList<>();
+        SPRT test = sprt;
+        GameWriter out = recorder;
+        games = match.play(games, threads, r -> {
+            results.add(r);
+            if (out != null) {
+                try {
+                    r.write(out);
+                } catch (IOException excp) {
+                    throw new UncheckedIOException(excp);
+                }
+            }
+            if (test == null) {
+                return true;
+            }
+            test.add(r.engine == 0);
+            return test.status() == SPRT.UNDECIDED;
+        });
+        double secs = (System.nanoTime() - start) * 1e-9;
+        if (recorder != null) {
+            try {
+                recorder.close();
+            } catch (IOException excp) {
+                fatal("Could not write record file: %s%n",
+                      excp.getMessage());
+            }
+        }
+        if (metrics != null) {
+            try {
+                metrics.close();
+            } catch (IOException excp) {
+                fatal("Could not export metrics: %s%n", excp.getMessage());
+            }
+        }
+
+        int whiteWins = 0, forfeits = 0;
+        int[] wins = new int[2];
+        long plies = 0;
+        long[] nanos = new long[2];
+        for (GameResult r : results) {
+            if (options.contains("--verbose")) {
+                System.out.printf("game %d: %s (engine %d) wins in %d"
+                                  + " moves%s%n", r.index,
+                                  r.winner.toName(), r.engine + 1, r.moves,
+                                  r.forfeit ? " on time" : "");
+            }
+            whiteWins += r.winner == WHITE ? 1 : 0;
+            forfeits += r.forfeit ? 1 : 0;
+            wins[r.engine] += 1;
+            plies += r.moves;
+            nanos[0] += r.nanos[0];
+            nanos[1] += r.nanos[1];
+        }
+        System.out.printf("%d games in %.1f s (%.2f games/s, %d threads)%n",
+                          games, secs, games / secs, threads);
+        System.out.printf("Engine 1 (depth %d): %d wins, %.1f s thinking%n",
+                          depth1, wins[0], nanos[0] * 1e-9);
+        System.out.printf("Engine 2 (depth %d): %d wins, %.1f s thinking%n",
+                          depth2, wins[1], nanos[1] * 1e-9);
+        System.out.printf("White wins: %d  Black wins: %d  Time forfeits: %d%n",
+                          whiteWins, games - whiteWins, forfeits);
+        System.out.printf("Average game length: %.1f moves%n",
+                          (double) plies / games);
+        if (sprt != null) {
+            System.out.printf("SPRT: %s%n", sprt);
+        }
+    }
+
+    /** Return the value of option KEY in OPTIONS, or DEFLT if absent. */
+    private static String option(CommandArgs options, String key,
+                                 String deflt) {
+        return options.contains(key) ? options.getFirst(key) : deflt;
+    }
+
+    /** A Reporter that discards all messages. */
+    private static final Reporter QUIET = new Reporter() {
+        @Override
+        public void reportError(String format, Object... args) {
+        }
+
+        @Override
+        public void reportNote(String format, Object... args) {
+        }
+
+        @Override
+        public void reportMove(Move move) {
+        }
+    };
+
+    /** The templates of the two engines. */
+    private final AI[] _engines;
+    /** Number of random moves at the start of each game. */
+    private final int _randomPlies;
+    /** Seed from which each game's random seed is derived. */
+    private final long _seed;
+    /** Maximum thinking time per move in nanoseconds, or 0 for none. */
+    private final long _moveTime;
+    /** Maximum number of moves for each side. */
+    private final int _moveLimit;
+    /** Starting time on each side's clock in nanoseconds, or 0 if games
+     *  are not timed. */
+    private long _clockBase;
+    /** Time added to a side's clock for each move in nanoseconds. */
+    private long _clockIncrement;
+}
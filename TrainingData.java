@@ -0,0 +1,149 @@
+package tablut;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import ucb.util.CommandArgs;
+
+import static tablut.Utils.*;
+
+/** A generator of labeled positions for tuning and training evaluations.
+ *  It plays engine-against-engine games in parallel as a Tournament does
+ *  (so that each game is determined by the seed and its game number),
+ *  samples positions in which an engine searched, and writes each with
+ *  the engine's score and the eventual winner to a ShardWriter.  Games are
+ *  written in order of game number, whatever order they finish in, so
+ *  that the same options always produce the same shards.
+ *  @author Vineet Vashist
+ */
+class TrainingData {
+
+    /** A generator playing the games of MATCH, of which the first
+     *  RANDOMPLIES moves are random, keeping each position searched by an
+     *  engine with probability SAMPLE (chosen with generators seeded from
+     *  SEED and the game number), and writing them to OUT. */
+    TrainingData(Tournament match, int randomPlies, double sample,
+                 long seed, ShardWriter out) {
+        _match = match;
+        _randomPlies = randomPlies;
+        _sample = sample;
+        _seed = seed;
+        _out = out;
+    }
+
+    /** Play GAMES games on THREADS threads, writing the sampled
+     *  positions.  Returns the number of positions written. */
+    long run(int games, int threads) throws IOException {
+        TreeMap<Integer, Tournament.GameResult> pending = new TreeMap<>();
+        long start = _out.records();
+        try {
+            _match.play(games, threads, r -> {
+                pending.put(r.index, r);
+                while (!pending.isEmpty()
+                       && pending.firstKey() == _nextGame) {
+                    try {
+                        sample(pending.pollFirstEntry().getValue());
+                    } catch (IOException excp) {
+                        throw new UncheckedIOException(excp);
+                    }
+                    _nextGame += 1;
+                }
+                return true;
+            });
+        } catch (UncheckedIOException excp) {
+            throw excp.getCause();
+        }
+        return _out.records() - start;
+    }
+
+    /** Write the sampled positions of GAME. */
+    private void sample(Tournament.GameResult game) throws IOException {
+        Random random = new Random((_seed + game.index) * SEED_SCRAMBLE);
+        Board board = new Board();
+        for (int k = 0; k < game.record.size(); k += 1) {
+            if (k >= _randomPlies && random.nextDouble() < _sample) {
+                _out.write(board, game.scores.get(k), game.winner,
+                           game.index);
+            }
+            board.makeMove(game.record.get(k));
+        }
+    }
+
+    /** Generate positions as directed by ARGS (see the usage message). */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--games={0,1} --threads={0,1} --depth={0,1}"
+                            + " --random={0,1} --seed={0,1} --limit={0,1}"
+                            + " --sample={0,1} --shard={0,1} --out={1}",
+                            args);
+        if (!options.ok()) {
+            fatal("Usage: java tablut.TrainingData --out=PREFIX [--games=N]"
+                  + " [--threads=N] [--depth=D] [--random=PLIES]"
+                  + " [--seed=S] [--limit=MOVES] [--sample=P]"
+                  + " [--shard=RECORDS]%n");
+        }
+        int games = 0, threads = 0, depth = 0, random = 0, limit = 0,
+            shard = 0;
+        long seed = 0;
+        double sample = 0;
+        try {
+            games = Integer.parseInt(option(options, "--games", "100"));
+            threads = Integer.parseInt(option(options, "--threads",
+                Integer.toString(Runtime.getRuntime()
+                                 .availableProcessors())));
+            depth = Integer.parseInt(option(options, "--depth",
+                Integer.toString(AI.DEFAULT_DEPTH)));
+            random = Integer.parseInt(option(options, "--random", "8"));
+            seed = Long.parseLong(option(options, "--seed", "0"));
+            limit = Integer.parseInt(option(options, "--limit", "200"));
+            sample = Double.parseDouble(option(options, "--sample", "0.25"));
+            shard = Integer.parseInt(option(options, "--shard", "1048576"));
+        } catch (NumberFormatException excp) {
+            fatal("Bad number: %s%n", excp.getMessage());
+        }
+        if (games < 1 || threads < 1 || depth < 0 || random < 0
+            || limit < 1 || sample < 0 || sample > 1 || shard < 1) {
+            fatal("Option values out of range.%n");
+        }
+
+        Tournament match = new Tournament(new AI(depth), new AI(depth),
+                                          random, seed, 0, limit);
+        long start = System.nanoTime();
+        long positions = 0;
+        try (ShardWriter out = new ShardWriter(options.getFirst("--out"),
+                                               shard)) {
+            positions = new TrainingData(match, random, sample, seed, out)
+                .run(games, threads);
+        } catch (IOException excp) {
+            fatal("Could not write positions: %s%n", excp.getMessage());
+        }
+        double secs = (System.nanoTime() - start) * 1e-9;
+        System.out.printf("%d positions from %d games in %.1f s"
+                          + " (%.0f positions/s)%n", positions, games, secs,
+                          positions / secs);
+    }
+
+    /** Return the value of option KEY in OPTIONS, or DEFLT if absent. */
+    private static String option(CommandArgs options, String key,
+                                 String deflt) {
+        return options.contains(key) ? options.getFirst(key) : deflt;
+    }
+
+    /** Multiplier spreading the seeds of the sampling generators. */
+    private static final long SEED_SCRAMBLE = 0x9E3779B97F4A7C15L;
+
+    /** The games to play. */
+    private final Tournament _match;
+    /** Number of random moves at the start of each game. */
+    private final int _randomPlies;
+    /** Probability of keeping each position searched. */
+    private final double _sample;
+    /** Seed of the match. */
+    private final long _seed;
+    /** Destination of the positions. */
+    private final ShardWriter _out;
+    /** Number of the next game to write. */
+    private int _nextGame;
+}
@@ -1,5 +1,26 @@
 package tablut;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 import ucb.junit.textui;
@@ -21,6 +42,862 @@ public class UnitTest {
         assertTrue("There are no unit tests!", true);
     }
 
-}
+    /** Check move-generation counts from the initial position, and that
+     *  the parallel count agrees with the sequential one. */
+    @Test
+    public void perftTest() {
+        Board b = new Board();
+        String start = b.encodedBoard();
+        assertEquals(80, Perft.perft(b, 1));
+        assertEquals(4400, Perft.perft(b, 2));
+        assertEquals(4400, Perft.perft(b, 2, 4));
+        assertEquals(start, b.encodedBoard());
+        assertEquals(0, b.moveCount());
+    }
 
+    /** Check that returning to an earlier position loses for the side
+     *  that returned to it, and that undo forgets the repetition. */
+    @Test
+    public void repetitionTest() {
+        Board b = new Board();
+        long start = b.positionKey();
+        for (String move : new String[] { "a4-b", "c5-7", "b4-a" }) {
+            b.makeMove(Move.mv(move));
+            assertNull(b.winner());
+        }
+        b.makeMove(Move.mv("c7-5"));
+        assertEquals(start, b.positionKey());
+        assertTrue(b.repeatedPosition());
+        assertEquals(Piece.BLACK, b.winner());
+        b.undo();
+        assertFalse(b.repeatedPosition());
+        assertNull(b.winner());
+        b.makeMove(Move.mv("c7-6"));
+        assertNull(b.winner());
+    }
 
+    /** Check that games written by GameWriter read back move for move,
+     *  using at most two bytes for each move without score or time. */
+    @Test
+    public void gameRecordTest() throws IOException {
+        Random random = new Random(1);
+        Board b = new Board();
+        List<Move> moves = new ArrayList<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameWriter out = new GameWriter(bytes);
+        out.startGame(false, false);
+        for (int k = 0; k < 60 && b.winner() == null; k += 1) {
+            List<Move> legal = b.legalMoves(b.turn());
+            Move m = legal.get(random.nextInt(legal.size()));
+            out.move(b, m);
+            moves.add(m);
+            b.makeMove(m);
+        }
+        out.endGame(b.winner());
+        out.startGame(true, true);
+        out.move(new Board(), moves.get(0), -1234, 56);
+        out.endGame(null);
+        out.close();
+        assertTrue(bytes.size() <= 5 + 1 + 2 * moves.size() + 3 + 10);
+
+        GameReader in =
+            new GameReader(new ByteArrayInputStream(bytes.toByteArray()));
+        Board replay = new Board();
+        assertTrue(in.nextGame(replay));
+        for (Move m : moves) {
+            assertSame(m, in.nextMove(replay));
+            replay.makeMove(m);
+        }
+        assertNull(in.nextMove(replay));
+        assertEquals(b.winner(), in.winner());
+        assertEquals(b.encodedBoard(), replay.encodedBoard());
+        assertTrue(in.nextGame(replay));
+        assertSame(moves.get(0), in.nextMove(replay));
+        assertEquals(-1234, in.score());
+        assertEquals(56, in.millis());
+        assertNull(in.nextMove(replay));
+        assertFalse(in.nextGame(replay));
+    }
+
+    /** Check king escape distances on the initial board and on a board
+     *  holding only the king and one blocker. */
+    @Test
+    public void escapeMapTest() {
+        Board b = new Board();
+        EscapeMap escapes = new EscapeMap().compute(b);
+        assertEquals(EscapeMap.UNREACHABLE, escapes.escapeDistance());
+        assertEquals(0, escapes.distance(Board.THRONE));
+
+        for (Square s : Square.SQUARE_LIST) {
+            b.put(Piece.EMPTY, s);
+        }
+        b.put(Piece.KING, Board.THRONE);
+        b.put(Piece.BLACK, Square.sq("e7"));
+        escapes.compute(b);
+        assertEquals(1, escapes.escapeDistance());
+        assertEquals(3, escapes.oneMoveEscapes());
+        assertEquals(32 - 4, escapes.twoMoveEscapes());
+        assertEquals(3, escapes.distance(Square.sq("e9")));
+        assertEquals(EscapeMap.UNREACHABLE,
+                     escapes.distance(Square.sq("e7")));
+        assertEquals(3, escapes.distance(Square.sq("e8")));
+    }
+
+    /** Check that the SPRT accepts the hypothesis favored by a lopsided
+     *  record and stays undecided on an even one. */
+    @Test
+    public void sprtTest() {
+        SPRT better = new SPRT(0, 50, 0.05, 0.05),
+            worse = new SPRT(0, 50, 0.05, 0.05),
+            even = new SPRT(0, 50, 0.05, 0.05);
+        for (int i = 0; i < 200 && better.status() == SPRT.UNDECIDED;
+             i += 1) {
+            better.add(i % 4 != 0);
+        }
+        assertEquals(SPRT.ACCEPT_H1, better.status());
+        assertTrue(better.eloLow() > 0);
+        for (int i = 0; i < 200 && worse.status() == SPRT.UNDECIDED;
+             i += 1) {
+            worse.add(i % 4 == 0);
+        }
+        assertEquals(SPRT.ACCEPT_H0, worse.status());
+        even.add(true);
+        even.add(false);
+        assertEquals(SPRT.UNDECIDED, even.status());
+        assertEquals(0.0, even.elo(), 1e-9);
+    }
+
+    /** Check that analysis returns distinct moves, best first, without
+     *  disturbing the position analyzed. */
+    @Test
+    public void analyzeTest() {
+        Board b = new Board();
+        String start = b.encodedBoard();
+        List<AI.Variation> lines = new AI().analyze(b, 3);
+        assertEquals(3, lines.size());
+        assertEquals(3, new HashSet<>(Arrays.asList(lines.get(0).move(),
+                                                    lines.get(1).move(),
+                                                    lines.get(2).move()))
+                     .size());
+        for (int i = 1; i < lines.size(); i += 1) {
+            assertTrue("lines out of order",
+                       lines.get(i - 1).score() <= lines.get(i).score());
+        }
+        for (AI.Variation line : lines) {
+            assertEquals(line.move(), line.pv().get(0));
+        }
+        assertEquals(start, b.encodedBoard());
+        assertEquals(0, b.moveCount());
+    }
+
+    /** Check that moves are parsed exactly as MOVE_PATTERN describes. */
+    @Test
+    public void moveParseTest() {
+        String chars = "`aij019-A ";
+        char[] text = new char[4];
+        for (int i = 0; i < 10000; i += 1) {
+            for (int k = 0, n = i; k < 4; k += 1, n /= 10) {
+                text[k] = chars.charAt(n % 10);
+            }
+            String str = new String(text);
+            boolean valid = Move.MOVE_PATTERN.matcher(str).matches();
+            assertEquals(str, valid, Move.isGrammaticalMove(str));
+            assertEquals(str, valid,
+                         Move.isGrammaticalMove("x" + str + "y", 1, 5));
+        }
+        assertEquals("e5-9", Move.mv("e5-9").toString());
+        assertEquals("e5-a", Move.mv("x e5-a", 2, 6).toString());
+        assertNull(Move.mv("e5-e"));
+        assertNull(Move.mv("e5-e1"));
+    }
+
+    /** Check that the analysis service answers every request, in some
+     *  order, with a legal move. */
+    @Test
+    public void analysisTest() throws IOException {
+        Board b = new Board();
+        StringBuilder requests = new StringBuilder();
+        List<String> positions = new ArrayList<>();
+        Random random = new Random(2);
+        for (int i = 0; i < 6; i += 1) {
+            positions.add(b.encodedBoard());
+            requests.append(b.encodedBoard()).append(" 1\n");
+            List<Move> moves = b.legalMoves(b.turn());
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        requests.append("# comment\n\nWWW\n");
+        StringWriter results = new StringWriter();
+        int count = new Analysis(3, 1).run(
+            new BufferedReader(new StringReader(requests.toString())),
+            results);
+        assertEquals(7, count);
+        String[] lines = results.toString().split("\\R");
+        assertEquals(7, lines.length);
+        HashSet<Integer> seen = new HashSet<>();
+        for (String line : lines) {
+            String[] fields = line.split(" ");
+            int n = Integer.parseInt(fields[0]);
+            seen.add(n);
+            if (n == 9) {
+                assertEquals("error:", fields[1]);
+            } else {
+                b.setEncodedBoard(positions.get(n - 1));
+                assertEquals(positions.get(n - 1), b.encodedBoard());
+                assertTrue(line, b.isLegal(Move.mv(fields[1])));
+                assertTrue(line, Long.parseLong(fields[3]) > 0);
+            }
+        }
+        assertEquals(7, seen.size());
+    }
+
+    /** Check that the analysis service still answers every request when
+     *  the analysis of some fails unexpectedly. */
+    @Test
+    public void analysisFailureTest() throws IOException {
+        Board b = new Board();
+        StringBuilder requests = new StringBuilder();
+        for (int i = 0; i < 8; i += 1) {
+            requests.append(b.encodedBoard()).append(" 1\n");
+            b.makeMove(b.legalMoves(b.turn()).get(0));
+        }
+        Analysis failing = new Analysis(2, 1) {
+            @Override
+            String analyze(AI engine, Board board) {
+                if (board.turn() == Piece.BLACK) {
+                    throw new IllegalStateException("engine failed");
+                }
+                return super.analyze(engine, board);
+            }
+        };
+        StringWriter results = new StringWriter();
+        assertEquals(8, failing.run(
+            new BufferedReader(new StringReader(requests.toString())),
+            results));
+        String[] lines = results.toString().split("\\R");
+        assertEquals(8, lines.length);
+        HashSet<Integer> seen = new HashSet<>();
+        for (String line : lines) {
+            String[] fields = line.split(" ");
+            int n = Integer.parseInt(fields[0]);
+            seen.add(n);
+            assertEquals(line, n % 2 == 1, fields[1].equals("error:"));
+        }
+        assertEquals(8, seen.size());
+    }
+
+    /** Check that positions survive formatting and parsing, and that
+     *  invalid positions are rejected. */
+    @Test
+    public void notationTest() {
+        Notation notation = new Notation();
+        Board b = new Board(), c = new Board();
+        assertEquals(Notation.INITIAL, Notation.format(b));
+        Random random = new Random(3);
+        b.setMoveLimit(40);
+        while (b.winner() == null && b.moveCount() < 60) {
+            String text = Notation.format(b);
+            notation.parse(text.toLowerCase(), c);
+            assertEquals(text, Notation.format(c));
+            assertEquals(b.encodedBoard(), c.encodedBoard());
+            assertEquals(b.positionKey(), c.positionKey());
+            assertEquals(b.moveCount(), c.moveCount());
+            List<Move> moves = b.legalMoves(b.turn());
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        String before = Notation.format(c);
+        for (String bad : new String[] {
+                "", "3BBB3/4B4/4W4/B3W3B/BBWWKWWBB/B3W3B/4W4/4B4/3BBB3",
+                "3BBB3/4B4/4W4/B3W3B/BBWWKWWBB/B3W3B/4W4/4B4/3BBB4 b 0 -",
+                "3BBB3/4B4/4W4/B3W3B/BBWWKWWBB/B3W3B/4W4/4B4/3BBB3 x 0 -",
+                "3BBB3/4B4/4W4/B3W3B/BBWWKWWBB/B3W3B/4W4/4B4/3BBB3 b 8 4",
+                "3BBB3/4B4/4W4/B3W3B/BBWKKWWBB/B3W3B/4W4/4B4/3BBB3 b 0 -",
+                "3BBB3/4B4/4W4/B3W3B/BBWWKWWBB/B3W3B/4W4/4B4/3BBB3 b 0 - x" }) {
+            try {
+                notation.parse(bad, c);
+                fail("accepted " + bad);
+            } catch (IllegalArgumentException excp) {
+                assertEquals(before, Notation.format(c));
+            }
+        }
+    }
+
+    /** Check that training data is the same however many threads
+     *  generate it, and that its shards and index agree. */
+    @Test
+    public void trainingDataTest() throws IOException {
+        Path dir = Files.createTempDirectory("tablut");
+        long[] counts = new long[2];
+        for (int threads = 1; threads <= 2; threads += 1) {
+            String prefix = dir.resolve("run" + threads).toString();
+            try (ShardWriter out = new ShardWriter(prefix, 40)) {
+                Tournament match =
+                    new Tournament(new AI(1), new AI(1), 4, 7, 0, 30);
+                counts[threads - 1] =
+                    new TrainingData(match, 4, 0.5, 7, out).run(4, threads);
+            }
+        }
+        assertEquals(counts[0], counts[1]);
+        assertTrue(counts[0] > 40);
+        List<String> index = Files.readAllLines(dir.resolve("run1.idx"));
+        long total = 0;
+        for (String line : index.subList(1, index.size())) {
+            String[] fields = line.split(" ");
+            byte[] shard = Files.readAllBytes(dir.resolve(fields[0]));
+            assertArrayEquals(shard, Files.readAllBytes(
+                dir.resolve(fields[0].replace("run1", "run2"))));
+            int records = Integer.parseInt(fields[1]);
+            assertEquals(records * ShardWriter.RECORD_SIZE, shard.length);
+            ByteBuffer buffer = ByteBuffer.wrap(shard);
+            Board b = new Board();
+            for (int k = 0; k < records; k += 1) {
+                int game = ShardWriter.readPosition(buffer, b);
+                assertTrue(game >= Integer.parseInt(fields[2])
+                           && game <= Integer.parseInt(fields[3]));
+                assertNotNull(b.kingPosition());
+            }
+            total += records;
+        }
+        assertEquals(counts[0], total);
+        for (File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(dir);
+    }
+
+    /** Check that a network's accumulator stays in step with the board
+     *  through moves, captures and undos, including moves made on copies
+     *  sharing it, and that networks survive being written and read. */
+    @Test
+    public void networkTest() throws IOException {
+        Network net = Network.random(16, 4);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        net.write(bytes);
+        Network copy =
+            Network.read(new ByteArrayInputStream(bytes.toByteArray()));
+        Board b = new Board();
+        net.attach(b);
+        Random random = new Random(4);
+        while (b.winner() == null && b.moveCount() < 120) {
+            List<Move> moves = b.legalMoves(b.turn());
+            for (Move move : moves) {
+                Board child = new Board(b);
+                child.makeMove(move);
+                Board fresh = new Board(child);
+                copy.attach(fresh);
+                assertEquals(copy.evaluate(fresh), net.evaluate(child));
+                child.aIundo();
+            }
+            Board fresh = new Board(b);
+            copy.attach(fresh);
+            assertEquals(copy.evaluate(fresh), net.evaluate(b));
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+            if (random.nextInt(5) == 0) {
+                b.undo();
+            }
+        }
+        while (b.moveCount() > 0) {
+            b.undo();
+        }
+        Board start = new Board();
+        net.attach(start);
+        assertEquals(net.evaluate(start), net.evaluate(b));
+
+        AI engine = new AI(1);
+        engine.setNetwork(net);
+        assertTrue(start.isLegal(engine.findMove(start)));
+    }
+
+    /** Check that evaluating positions in a batch gives the scores that
+     *  evaluating them one at a time does. */
+    @Test
+    public void batchEvalTest() {
+        Random random = new Random(5);
+        Board[] boards = new Board[61];
+        Board b = new Board();
+        for (int i = 0; i < boards.length; i += 1) {
+            if (b.winner() != null || b.moveCount() >= 100) {
+                b = new Board();
+            }
+            List<Move> moves = b.legalMoves(b.turn());
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+            boards[i] = new Board(b);
+        }
+        Network net = Network.random(40, 5);
+        for (boolean useNetwork : new boolean[] { false, true }) {
+            AI engine = new AI();
+            if (useNetwork) {
+                engine.setNetwork(net);
+                for (Board board : boards) {
+                    net.attach(board);
+                }
+            }
+            int[] expected = new int[boards.length];
+            for (int i = 0; i < boards.length; i += 1) {
+                expected[i] = engine.staticScore(boards[i], boards[i].turn());
+            }
+            EvalKernel[] kernels = { EvalKernel.SCALAR, EvalKernel.BEST };
+            for (EvalKernel kernel : kernels) {
+                int[] scores = new int[boards.length];
+                engine.staticScores(boards, boards.length, scores, kernel);
+                assertArrayEquals(expected, scores);
+            }
+        }
+    }
+
+    /** Check that the eight symmetries of the board carry positions to
+     *  positions with the same canonical key, value, and (correspondingly
+     *  transformed) legal moves. */
+    @Test
+    public void symmetryTest() {
+        for (int s = 0; s < Square.NUM_SYMMETRIES; s += 1) {
+            assertSame(Board.THRONE, Board.THRONE.symmetric(s));
+            for (Square sq : Square.SQUARE_LIST) {
+                assertSame(sq, sq.symmetric(s)
+                           .symmetric(Square.inverseSymmetry(s)));
+            }
+        }
+        Random random = new Random(6);
+        Board b = new Board();
+        Board image = new Board();
+        Piece[] contents = new Piece[Square.NUM_SQUARES];
+        AI engine = new AI();
+        while (b.winner() == null && b.moveCount() < 40) {
+            HashSet<Long> keys = new HashSet<>();
+            for (int s = 0; s < Square.NUM_SYMMETRIES; s += 1) {
+                for (Square sq : Square.SQUARE_LIST) {
+                    contents[sq.symmetric(s).index()] = b.get(sq);
+                }
+                image.setPosition(contents, b.turn(), b.moveCount(), -1);
+                assertEquals(b.symmetricKey(s), image.positionKey());
+                assertEquals(b.canonicalKey(), image.canonicalKey());
+                assertEquals(engine.staticScore(b, b.turn()),
+                             engine.staticScore(image, image.turn()));
+                HashSet<Move> moves = new HashSet<>();
+                for (Move m : b.legalMoves(b.turn())) {
+                    moves.add(m.symmetric(s));
+                }
+                assertEquals(moves,
+                             new HashSet<>(image.legalMoves(image.turn())));
+                keys.add(image.positionKey());
+            }
+            assertTrue(keys.contains(b.canonicalKey()));
+            List<Move> moves = b.legalMoves(b.turn());
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+            if (random.nextInt(4) == 0) {
+                b.undo();
+            }
+        }
+    }
+
+    /** Check that a GameTree keeps variations and moves a board between
+     *  any of its positions. */
+    @Test
+    public void gameTreeTest() {
+        Random random = new Random(7);
+        Board b = new Board();
+        GameTree tree = new GameTree(b);
+        ArrayList<GameTree.Node> nodes = new ArrayList<>();
+        nodes.add(tree.root());
+        for (int i = 0; i < 200; i += 1) {
+            if (b.winner() == null && random.nextInt(3) > 0) {
+                List<Move> moves = b.legalMoves(b.turn());
+                Move m = moves.get(random.nextInt(moves.size()));
+                b.makeMove(m);
+                GameTree.Node node = tree.play(m);
+                assertSame(m, node.move());
+                if (!nodes.contains(node)) {
+                    nodes.add(node);
+                }
+            } else {
+                tree.jump(nodes.get(random.nextInt(nodes.size())), b);
+            }
+            Board rebuilt = new Board();
+            tree.position(tree.current(), rebuilt, new Notation());
+            assertEquals(rebuilt.encodedBoard(), b.encodedBoard());
+            assertEquals(rebuilt.positionKey(), b.positionKey());
+            assertEquals(tree.current().ply(), b.moveCount());
+        }
+        GameTree.Node end = tree.current();
+        if (end.ply() > 0) {
+            Move last = tree.back();
+            assertSame(end.move(), last);
+            assertSame(end.parent(), tree.current());
+            assertSame(end, tree.play(last));
+        }
+        tree.jump(tree.root(), b);
+        assertEquals(new Board().encodedBoard(), b.encodedBoard());
+        assertEquals(tree.root().variations().get(0),
+                     tree.atPly(1));
+    }
+
+    /** Check a short session with the game server. */
+    @Test
+    public void serverTest() throws IOException {
+        try (Server server = new Server("0", 1);
+             Socket client = new Socket()) {
+            Thread serving = new Thread(() -> {
+                try {
+                    server.serve();
+                } catch (IOException excp) {
+                    throw new UncheckedIOException(excp);
+                }
+            });
+            serving.setDaemon(true);
+            serving.start();
+            client.connect(server.address());
+            BufferedReader in = new BufferedReader(
+                new InputStreamReader(client.getInputStream()));
+            PrintStream out = new PrintStream(client.getOutputStream(), true);
+            assertEquals(Server.GREETING, in.readLine());
+            out.println("auto white");
+            assertEquals("ok", in.readLine());
+            out.println("a4-b");
+            Move reply = Move.mv(in.readLine().substring("move ".length()));
+            assertNotNull(reply);
+            assertEquals("ok", in.readLine());
+            out.println("a4-c");
+            assertTrue(in.readLine().startsWith("error: "));
+            out.println("undo");
+            assertEquals("ok", in.readLine());
+            out.println("a4-b");
+            assertEquals("move " + reply, in.readLine());
+            assertEquals("ok", in.readLine());
+            out.println("quit");
+            assertEquals("ok", in.readLine());
+            assertNull(in.readLine());
+        }
+    }
+
+    /** Check that the server stops the engine's search when its client
+     *  goes away, ending the session. */
+    @Test
+    public void abandonedSessionTest() throws Exception {
+        try (Server server = new Server("0", 8)) {
+            Thread serving = new Thread(() -> {
+                try {
+                    server.serve();
+                } catch (IOException excp) {
+                    throw new UncheckedIOException(excp);
+                }
+            });
+            serving.setDaemon(true);
+            serving.start();
+            try (Socket client = new Socket()) {
+                client.connect(server.address());
+                BufferedReader in = new BufferedReader(
+                    new InputStreamReader(client.getInputStream()));
+                PrintStream out =
+                    new PrintStream(client.getOutputStream(), true);
+                assertEquals(Server.GREETING, in.readLine());
+                out.println("auto black");
+                Thread.sleep(100);
+                assertEquals(1, server.activeSessions());
+            }
+            long start = System.nanoTime();
+            while (server.activeSessions() > 0
+                   && System.nanoTime() - start < 5_000_000_000L) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, server.activeSessions());
+        }
+    }
+
+    @Test
+    public void metricsTest() throws IOException {
+        Metrics metrics = new Metrics();
+        Metrics.Counter moves = metrics.counter("moves_total", "Moves.");
+        Metrics.Gauge games = metrics.gauge("games", "Games.");
+        Metrics.Histogram times =
+            metrics.histogram("seconds", "Times.", 0.5, 1);
+        moves.add(3);
+        moves.inc();
+        games.inc();
+        games.inc();
+        games.dec();
+        times.observe(0.25);
+        times.observe(0.5);
+        times.observe(0.75);
+        times.observe(2);
+        assertEquals(4, times.count());
+        String expected =
+            "# HELP moves_total Moves.\n"
+            + "# TYPE moves_total counter\n"
+            + "moves_total 4\n"
+            + "# HELP games Games.\n"
+            + "# TYPE games gauge\n"
+            + "games 1\n"
+            + "# HELP seconds Times.\n"
+            + "# TYPE seconds histogram\n"
+            + "seconds_bucket{le=\"0.5\"} 2\n"
+            + "seconds_bucket{le=\"1.0\"} 3\n"
+            + "seconds_bucket{le=\"+Inf\"} 4\n"
+            + "seconds_sum 3.5\n"
+            + "seconds_count 4\n";
+        assertEquals(expected, metrics.text());
+        Path file = Files.createTempFile("tablut", ".prom");
+        try {
+            metrics.writeFile(file);
+            assertEquals(expected, Files.readString(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        try {
+            metrics.counter("games", "Again.");
+            fail("duplicate metric accepted");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void searchStopTest() throws InterruptedException {
+        Board board = new Board();
+        AI engine = new AI(8);
+        long start = System.nanoTime();
+        Move move = engine.findMove(board, start + 50_000_000L);
+        assertTrue(engine.stopped());
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        assertTrue(board.isLegal(move));
+
+        Thread stopper = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException excp) {
+                return;
+            }
+            engine.stop();
+        });
+        stopper.start();
+        move = engine.findMove(board);
+        stopper.join();
+        assertTrue(engine.stopped());
+        assertTrue(board.isLegal(move));
+
+        AI shallow = new AI(1);
+        assertEquals(shallow.findMove(board),
+                     shallow.findMove(board, AI.NO_DEADLINE));
+        assertFalse(shallow.stopped());
+    }
+
+    /** A manual player that makes black automated and then, while black
+     *  searches, asks at once to quit. */
+    private static class QuittingPlayer extends Player {
+        /** A QuittingPlayer playing PIECE under control of CONTROLLER. */
+        QuittingPlayer(Piece piece, Controller controller) {
+            super(piece, controller);
+        }
+
+        @Override
+        boolean isManual() {
+            return true;
+        }
+
+        @Override
+        Player create(Piece piece, Controller controller) {
+            return new QuittingPlayer(piece, controller);
+        }
+
+        @Override
+        String myMove() {
+            return "auto black";
+        }
+
+        @Override
+        boolean pollsCommands() {
+            return true;
+        }
+
+        @Override
+        String pollCommand(long millis) {
+            return "quit";
+        }
+    }
+
+    /** Check that a command given while an engine searches in the
+     *  background ends the search promptly, even when it comes before
+     *  the search has started. */
+    @Test
+    public void backgroundQuitTest() throws InterruptedException {
+        Controller controller =
+            new Controller(new NullView(), null, new TextReporter(),
+                           new QuittingPlayer(null, null), new AI(8),
+                           false);
+        Thread game = new Thread(controller::play);
+        game.setDaemon(true);
+        long start = System.nanoTime();
+        game.start();
+        game.join(10_000);
+        assertFalse(game.isAlive());
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+    }
+
+    /** Check that "stop", typed while an engine chooses a move, makes it
+     *  play the best move it has found so far, and that lines typed
+     *  meanwhile that are not "stop" are read in their turn. */
+    @Test
+    public void textStopTest() throws InterruptedException {
+        InputStream stdin = System.in;
+        System.setIn(new ByteArrayInputStream(
+            "manual white\nauto black\nstop\n".getBytes()));
+        try {
+            Controller controller =
+                new Controller(new NullView(), null, new TextReporter(),
+                               new TextPlayer(), new AI(8), false);
+            Thread game = new Thread(controller::play);
+            game.setDaemon(true);
+            game.start();
+            game.join(10_000);
+            assertFalse(game.isAlive());
+            assertEquals(1, controller.board().moveCount());
+        } finally {
+            System.setIn(stdin);
+        }
+    }
+
+    /** Check that a stop requested before a search starts stops that
+     *  search, and only that one, unless it is withdrawn. */
+    @Test
+    public void stopBeforeSearchTest() {
+        Board board = new Board();
+        AI engine = new AI(8);
+        engine.stop();
+        long start = System.nanoTime();
+        Move move = engine.findMove(board);
+        assertTrue(engine.stopped());
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        assertTrue(board.isLegal(move));
+
+        AI shallow = new AI(1);
+        shallow.findMove(board);
+        assertFalse(shallow.stopped());
+        shallow.stop();
+        shallow.clearStop();
+        shallow.findMove(board);
+        assertFalse(shallow.stopped());
+        shallow.stop();
+        assertTrue(shallow.analyze(board, 2).isEmpty());
+        assertTrue(shallow.stopped());
+    }
+
+    @Test
+    public void clockTest() {
+        long[] now = { 0 };
+        Clock clock = new Clock(60_000, 1_000, () -> now[0]);
+        clock.start(Piece.BLACK);
+        now[0] += 10_000;
+        assertEquals(50_000, clock.remaining(Piece.BLACK));
+        assertTrue(clock.press());
+        assertEquals(51_000, clock.remaining(Piece.BLACK));
+        assertNull(clock.running());
+        clock.start(Piece.WHITE);
+        now[0] += 70_000;
+        assertFalse(clock.press());
+        assertEquals(-10_000, clock.remaining(Piece.WHITE));
+        clock.reset();
+        assertEquals(60_000, clock.remaining(Piece.WHITE));
+        assertEquals("1:05.2", Clock.format(65_299_999_999L));
+
+        TimeManager early = new TimeManager(60_000_000_000L, 0, 0),
+            late = new TimeManager(60_000_000_000L, 0, 100),
+            bonus = new TimeManager(60_000_000_000L, 1_000_000_000L, 0),
+            hurried = new TimeManager(1_000_000_000L, 0, 0);
+        assertTrue(early.target() < late.target());
+        assertTrue(early.target() < bonus.target());
+        assertTrue(early.target() <= early.maximum());
+        assertTrue(hurried.maximum() < 1_000_000_000L / 2);
+        assertTrue(early.another(0, false));
+        assertFalse(early.another(early.target(), false));
+        assertTrue(early.another(early.target() * 3 / 4, true));
+
+        Board board = new Board();
+        AI engine = new AI(1);
+        long start = System.nanoTime();
+        Move move = engine.findMove(board, hurried);
+        assertTrue(System.nanoTime() - start
+                   < hurried.maximum() + 1_000_000_000L);
+        assertTrue(board.isLegal(move));
+    }
+
+    /** Check that a strict game that fails still writes out its log. */
+    /** A manual player that makes black automated, and quits once the
+     *  game is over. */
+    private static class AutoBlackPlayer extends Player {
+        /** An AutoBlackPlayer playing PIECE under control of
+         *  CONTROLLER. */
+        AutoBlackPlayer(Piece piece, Controller controller) {
+            super(piece, controller);
+        }
+
+        @Override
+        boolean isManual() {
+            return true;
+        }
+
+        @Override
+        Player create(Piece piece, Controller controller) {
+            return new AutoBlackPlayer(piece, controller);
+        }
+
+        @Override
+        String myMove() {
+            return board().winner() == null ? "auto black" : "quit";
+        }
+    }
+
+    /** Check that the moves of automated players reach the board and the
+     *  log directly, without being executed as text commands, while
+     *  players' commands still are. */
+    @Test
+    public void actionTest() throws IOException {
+        Path log = Files.createTempFile("tablut", ".log");
+        try {
+            Controller controller =
+                new Controller(new NullView(), AsyncLog.open(log.toString()),
+                               new TextReporter(),
+                               new AutoBlackPlayer(null, null), new AI(0),
+                               false);
+            controller.play();
+            Board board = controller.board();
+            assertNotNull(board.winner());
+            assertEquals(2, controller.commandsExecuted());
+
+            List<String> lines = Files.readAllLines(log);
+            assertEquals(board.moveCount() + 2, lines.size());
+            assertEquals("auto black", lines.get(0));
+            assertEquals("quit", lines.get(lines.size() - 1));
+            Board replay = new Board();
+            for (String line : lines.subList(1, lines.size() - 1)) {
+                Move move = Move.mv(line);
+                assertTrue(line, replay.isLegal(move));
+                replay.makeMove(move);
+            }
+            assertEquals(board.encodedBoard(), replay.encodedBoard());
+        } finally {
+            Files.deleteIfExists(log);
+        }
+    }
+
+    @Test
+    public void strictLogTest() throws IOException, InterruptedException {
+        Path input = Files.createTempFile("tablut", ".in"),
+            log = Files.createTempFile("tablut", ".log");
+        try {
+            Files.writeString(input, "a4-b\nbad command\n");
+            Process main = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java")
+                .toString(),
+                "-cp", System.getProperty("java.class.path"), "tablut.Main",
+                "--batch", "--strict", "--log=" + log, input.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            assertEquals(1, main.waitFor());
+            assertEquals(List.of("a4-b", "bad command"),
+                         Files.readAllLines(log));
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(log);
+        }
+    }
+
+}
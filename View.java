@@ -7,4 +7,10 @@ interface View {
     /** Update the current view according to the game on CONTROLLER. */
     void update(Controller controller);
 
+    /** Show PROGRESS, the latest progress of an engine choosing a move in
+     *  the game on CONTROLLER.  Called from the engine's thread, at most
+     *  a few times a second.  By default, does nothing. */
+    default void progress(Controller controller, AI.Progress progress) {
+    }
+
 }
@@ -0,0 +1,76 @@
+package tablut;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmarks for the evaluation and search of AI.
+ *  @author Vineet Vashist
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AIBenchmark {
+
+    /** Name of the position (see BenchPositions) to benchmark. */
+    @Param({ BenchPositions.OPENING, BenchPositions.MIDDLEGAME,
+             BenchPositions.ENDGAME })
+    public String position;
+
+    /** Set up the board for POSITION. */
+    @Setup
+    public void setup() {
+        _board = BenchPositions.board(position);
+        _ai = new AI();
+        _batch = new Board[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i += 1) {
+            _batch[i] = new Board(_board);
+        }
+    }
+
+    /** Statically evaluate the position. */
+    @Benchmark
+    public int staticScore() {
+        return _ai.staticScore(_board, _board.turn());
+    }
+
+    /** Statically evaluate BATCH_SIZE copies of the position at once
+     *  (with the Vector API if run with --add-modules
+     *  jdk.incubator.vector and "make vector"). */
+    @Benchmark
+    public int[] staticScores() {
+        _ai.staticScores(_batch, BATCH_SIZE, _scores);
+        return _scores;
+    }
+
+    /** Search the position to the AI's fixed depth. */
+    @Benchmark
+    public Move findMove() {
+        return _ai.findMove(_board);
+    }
+
+    /** The position being benchmarked. */
+    private Board _board;
+    /** The player doing the evaluation. */
+    private AI _ai;
+
+    /** Number of positions evaluated by staticScores. */
+    private static final int BATCH_SIZE = 64;
+    /** The positions evaluated by staticScores. */
+    private Board[] _batch;
+    /** Their scores. */
+    private final int[] _scores = new int[BATCH_SIZE];
+}
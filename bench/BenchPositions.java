@@ -0,0 +1,90 @@
+package tablut;
+
+import static tablut.Move.mv;
+
+/** Fixed positions used by the benchmarks, each reached by a fixed
+ *  sequence of moves from the initial position.
+ *  @author Vineet Vashist
+ */
+class BenchPositions {
+
+    /** Names of the available positions, for use in @Param. */
+    static final String OPENING = "opening",
+        MIDDLEGAME = "middlegame",
+        ENDGAME = "endgame";
+
+    /** Moves leading to the middlegame position (one white piece lost). */
+    private static final String[] MIDDLEGAME_MOVES = {
+        "e8-d", "f5-8", "i6-7", "g5-f", "i7-h", "e6-i", "a6-7", "e7-6",
+        "a7-f", "e4-g", "h5-g", "e6-7", "d8-a", "e3-h", "f9-h", "h3-a",
+        "e2-h", "e5-2", "a4-e", "i6-g"
+    };
+
+    /** Moves leading to the endgame position: 14 pieces left (the king,
+     *  three other white pieces and ten black ones), with the king on e3,
+     *  off the throne, and black to move. */
+    private static final String[] ENDGAME_MOVES = {
+        "b5-4", "d5-7", "d1-5", "e6-d", "a5-b", "e4-d", "i4-e", "f5-4",
+        "i6-e", "f4-6", "f1-5", "d4-f", "h5-8", "d6-3", "e2-c", "e5-3",
+        "b4-d", "d7-5", "c2-5", "d3-4", "b5-3", "d4-7", "f9-8", "d7-5",
+        "e9-f", "d5-7", "e1-f", "f4-e", "a4-c", "e4-i", "c4-a", "f6-i"
+    };
+
+    /** Most pieces that the endgame position may have. */
+    private static final int ENDGAME_MAX_PIECES = 16;
+
+    /** Return a new Board set up in the position named NAME. */
+    static Board board(String name) {
+        String[] moves;
+        switch (name) {
+        case OPENING:
+            moves = new String[0];
+            break;
+        case MIDDLEGAME:
+            moves = MIDDLEGAME_MOVES;
+            break;
+        case ENDGAME:
+            moves = ENDGAME_MOVES;
+            break;
+        default:
+            throw new IllegalArgumentException("unknown position: " + name);
+        }
+        Board result = new Board();
+        for (String move : moves) {
+            result.makeMove(mv(move));
+        }
+        if (name.equals(ENDGAME)
+            && (result.winner() != null
+                || result.kingPosition() == Board.THRONE
+                || pieces(result) > ENDGAME_MAX_PIECES)) {
+            throw new IllegalStateException("endgame position is not an"
+                                            + " endgame");
+        }
+        return result;
+    }
+
+    /** Return the number of pieces on BOARD. */
+    private static int pieces(Board board) {
+        int count = 0;
+        for (Square sq : Square.SQUARE_LIST) {
+            if (board.get(sq) != Piece.EMPTY) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /** Return the destination square of the last move used to reach the
+     *  position named NAME, or the throne for the initial position. */
+    static Square lastTo(String name) {
+        switch (name) {
+        case MIDDLEGAME:
+            return mv(MIDDLEGAME_MOVES[MIDDLEGAME_MOVES.length - 1]).to();
+        case ENDGAME:
+            return mv(ENDGAME_MOVES[ENDGAME_MOVES.length - 1]).to();
+        default:
+            return Board.THRONE;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package tablut;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmarks for the move generation and position-update paths of
+ *  Board and Move.
+ *  @author Vineet Vashist
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    /** Name of the position (see BenchPositions) to benchmark. */
+    @Param({ BenchPositions.OPENING, BenchPositions.MIDDLEGAME,
+             BenchPositions.ENDGAME })
+    public String position;
+
+    /** Set up the board for POSITION. */
+    @Setup
+    public void setup() {
+        _board = BenchPositions.board(position);
+        _move = _board.legalMoves(_board.turn()).get(0);
+        _lastTo = BenchPositions.lastTo(position);
+    }
+
+    /** Generate all legal moves for the side to move. */
+    @Benchmark
+    public List<Move> legalMoves() {
+        return _board.legalMoves(_board.turn());
+    }
+
+    /** Make a fixed legal move and take it back. */
+    @Benchmark
+    public Board makeMoveUndo() {
+        _board.makeMove(_move);
+        _board.undo();
+        return _board;
+    }
+
+    /** Encode the position as a string. */
+    @Benchmark
+    public String encodedBoard() {
+        return _board.encodedBoard();
+    }
+
+    /** Look for captures around the last square moved to.  The captures
+     *  themselves were done when the position was set up, so this leaves
+     *  the board unchanged. */
+    @Benchmark
+    public Board findAllCaptures() {
+        _board.findAllCaptures(_lastTo);
+        return _board;
+    }
+
+    /** The position being benchmarked. */
+    private Board _board;
+    /** A legal move in _board. */
+    private Move _move;
+    /** The square last moved to in reaching _board. */
+    private Square _lastTo;
+}
@@ -0,0 +1,84 @@
+package tablut;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.ADD;
+import static jdk.incubator.vector.VectorOperators.S2I;
+
+/** An EvalKernel using the SIMD instructions of the (incubating) Java
+ *  Vector API, with vectors of the machine's preferred size.  This class
+ *  is compiled separately from the others ("make vector"), since it needs
+ *  the jdk.incubator.vector module, and is loaded only if that module is
+ *  present at run time (see EvalKernel.BEST).
+ *
+ *  Lanes hold Java ints, whose additions and multiplications wrap around
+ *  exactly as EvalKernel.SCALAR's do, so the order in which the lanes are
+ *  summed does not affect the results.
+ *  @author Vineet Vashist
+ */
+final class VectorKernel implements EvalKernel {
+
+    @Override
+    public void combine(int[][] features, int[] weights, int count,
+                        int[] scores) {
+        int i;
+        for (i = 0; i < INTS.loopBound(count); i += INTS.length()) {
+            IntVector sum = IntVector.zero(INTS);
+            for (int k = 0; k < weights.length; k += 1) {
+                sum = IntVector.fromArray(INTS, features[k], i)
+                    .mul(weights[k]).add(sum);
+            }
+            sum.intoArray(scores, i);
+        }
+        for (; i < count; i += 1) {
+            int sum = 0;
+            for (int k = 0; k < weights.length; k += 1) {
+                sum += weights[k] * features[k][i];
+            }
+            scores[i] = sum;
+        }
+    }
+
+    @Override
+    public long clippedDot(short[] values, short[] weights, int clip,
+                           int length) {
+        long total = 0;
+        int i;
+        for (i = 0; i < SHORTS.loopBound(length); ) {
+            int end = Math.min(SHORTS.loopBound(length), i + CHUNK);
+            IntVector sum = IntVector.zero(INTS);
+            for (; i < end; i += SHORTS.length()) {
+                IntVector v = (IntVector)
+                    ShortVector.fromArray(SHORTS, values, i)
+                    .max((short) 0).min((short) clip)
+                    .convertShape(S2I, INTS, 0);
+                IntVector w = (IntVector)
+                    ShortVector.fromArray(SHORTS, weights, i)
+                    .convertShape(S2I, INTS, 0);
+                sum = v.mul(w).add(sum);
+            }
+            total += sum.reduceLanes(ADD);
+        }
+        for (; i < length; i += 1) {
+            int v = Math.min(Math.max(values[i], 0), clip);
+            total += v * weights[i];
+        }
+        return total;
+    }
+
+    /** Number of products summed in int lanes before adding them to the
+     *  long total.  Each product is at most 255 * 32768 in magnitude, so
+     *  CHUNK of them cannot overflow an int. */
+    private static final int CHUNK = 256;
+
+    /** Shape of the int vectors. */
+    private static final VectorSpecies<Integer> INTS =
+        IntVector.SPECIES_PREFERRED;
+    /** Shape of the short vectors, with as many lanes as INTS. */
+    private static final VectorSpecies<Short> SHORTS =
+        VectorSpecies.of(short.class,
+                         VectorShape.forBitSize(INTS.vectorBitSize() / 2));
+}